@@ -0,0 +1,48 @@
+package com.fantj.mvc.bench;
+
+import com.fantj.mvc.framework.annotation.Autowired;
+import com.fantj.mvc.framework.annotation.Controller;
+import com.fantj.mvc.framework.annotation.RequestMapping;
+import com.fantj.mvc.framework.annotation.RequestParam;
+import com.fantj.mvc.framework.annotation.ResponseBody;
+import com.fantj.mvc.framework.servlet.ModelAndView;
+import com.fantj.mvc.sample.pojo.User;
+import com.fantj.mvc.sample.service.UserService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+* 基准测试用的 controller
+* @author JiaoFanTing
+**/
+@Controller
+@RequestMapping("/bench")
+public class BenchController {
+
+    @Autowired
+    private UserService userService;
+
+    @RequestMapping("/plain.json")
+    public ModelAndView plain(){
+        User user = userService.getUser();
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", user.getName());
+        map.put("addr", user.getAddr());
+        return new ModelAndView("template.fantj", map);
+    }
+
+    @RequestMapping("/params.json")
+    public ModelAndView params(@RequestParam("id") int id, @RequestParam("name") String name){
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id);
+        map.put("name", name);
+        return new ModelAndView("bench.fantj", map);
+    }
+
+    @ResponseBody
+    @RequestMapping("/user.json")
+    public User user(){
+        return userService.getUser();
+    }
+}
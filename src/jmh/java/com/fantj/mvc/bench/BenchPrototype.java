@@ -0,0 +1,17 @@
+package com.fantj.mvc.bench;
+
+import com.fantj.mvc.framework.annotation.Autowired;
+import com.fantj.mvc.framework.annotation.BeanScope;
+import com.fantj.mvc.framework.annotation.Service;
+import com.fantj.mvc.sample.service.UserService;
+
+/**
+* 基准测试用的 prototype bean
+* @author JiaoFanTing
+**/
+@Service(value = "benchPrototype", scope = BeanScope.PROTOTYPE)
+public class BenchPrototype {
+
+    @Autowired
+    private UserService userService;
+}
@@ -0,0 +1,16 @@
+package com.fantj.mvc.bench;
+
+import com.fantj.mvc.framework.annotation.Autowired;
+import com.fantj.mvc.framework.annotation.BeanScope;
+import com.fantj.mvc.framework.annotation.Service;
+
+/**
+* 基准测试用的 request bean
+* @author JiaoFanTing
+**/
+@Service(value = "benchRequestBean", scope = BeanScope.REQUEST)
+public class BenchRequestBean {
+
+    @Autowired("benchPrototype")
+    private BenchPrototype prototype;
+}
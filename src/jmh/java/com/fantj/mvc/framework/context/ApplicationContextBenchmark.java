@@ -0,0 +1,111 @@
+package com.fantj.mvc.framework.context;
+
+import com.fantj.mvc.framework.annotation.processor.ComponentIndexProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+* IOC 容器启动耗时：顺序、并行、懒加载三种模式
+* 启动前生成 beans 个合成 bean 并编译（一半 service 组成二叉依赖树，一半 controller 各注入一个 service），
+* 组件索引由 ComponentIndexProcessor 在编译时生成；容器类在独立的类加载器中加载，才能看到这些类
+* @author JiaoFanTing
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationContextBenchmark {
+
+    private static final String PACKAGE = "bench.synthetic";
+
+    @Param({"sequential", "parallel", "lazy"})
+    public String mode;
+
+    /**
+     * 合成 bean 个数
+     */
+    @Param({"100", "1000"})
+    public int beans;
+
+    private Path directory;
+    private URLClassLoader classLoader;
+    private Constructor<?> constructor;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("bench-context");
+        Path sources = Files.createDirectories(directory.resolve("src"));
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-d");
+        arguments.add(classes.toString());
+        arguments.add("-cp");
+        arguments.add(frameworkLocation().getPath());
+        // 只运行组件索引处理器，classpath 上的其他处理器（如 lombok）与此无关
+        arguments.add("-processor");
+        arguments.add(ComponentIndexProcessor.class.getName());
+        int services = beans / 2;
+        for (int i = 0; i < services; i++) {
+            String field = i == 0 ? "" : "    @Autowired(\"service" + (i - 1) / 2 + "\")\n    private Service" + (i - 1) / 2 + " parent;\n";
+            arguments.add(write(sources, "Service" + i, "@Service(\"service" + i + "\")\npublic class Service" + i + " {\n" + field + "}\n"));
+        }
+        for (int i = 0; i < beans - services; i++) {
+            String field = "    @Autowired(\"service" + i % services + "\")\n    private Service" + i % services + " service;\n";
+            arguments.add(write(sources, "Controller" + i, "@Controller\npublic class Controller" + i + " {\n" + field + "}\n"));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null || compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("合成 bean 编译失败");
+        }
+        String config = "packageScan=" + PACKAGE + "\nbeanInitMode=" + mode + "\nbeanInitLog=false\n";
+        Files.write(classes.resolve("bench-context.properties"), config.getBytes(StandardCharsets.ISO_8859_1));
+        // 父加载器不含应用 classpath，容器只能从这里加载框架类与合成 bean
+        classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL(), frameworkLocation()},
+                ClassLoader.getSystemClassLoader().getParent());
+        constructor = classLoader.loadClass(ApplicationContext.class.getName()).getConstructor(String.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public Object construct() throws Exception {
+        return constructor.newInstance("classpath:bench-context.properties");
+    }
+
+    private static URL frameworkLocation() {
+        return ApplicationContext.class.getProtectionDomain().getCodeSource().getLocation();
+    }
+
+    private static String write(Path sources, String className, String body) throws IOException {
+        Path file = sources.resolve(className + ".java");
+        String source = "package " + PACKAGE + ";\n\n"
+                + "import com.fantj.mvc.framework.annotation.Autowired;\n"
+                + "import com.fantj.mvc.framework.annotation.Controller;\n"
+                + "import com.fantj.mvc.framework.annotation.Service;\n\n" + body;
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.fantj.mvc.framework.context;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+* 非单例 bean 的获取耗时：单例、prototype、一个请求内第一次获取 request bean
+* @author JiaoFanTing
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanScopeBenchmark {
+
+    private ApplicationContext context;
+
+    @Setup
+    public void setup() {
+        context = new ApplicationContext("classpath:bench-sequential.properties");
+    }
+
+    @Benchmark
+    public Object singleton() {
+        return context.getBean("com.fantj.mvc.sample.service.UserService");
+    }
+
+    @Benchmark
+    public Object prototype() {
+        return context.getBean("benchPrototype");
+    }
+
+    @Benchmark
+    public Object request() {
+        return context.getBean("benchRequestBean", context.newRequestScope());
+    }
+}
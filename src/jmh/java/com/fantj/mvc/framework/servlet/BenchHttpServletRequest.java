@@ -0,0 +1,161 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+* 基准测试用的内存 request：热路径上的方法直接实现，其余方法调用时抛出异常
+* @author JiaoFanTing
+**/
+public class BenchHttpServletRequest extends HttpServletRequestWrapper {
+
+    private final String method;
+    private final String requestURI;
+    private final Map<String, String[]> parameters = new LinkedHashMap<>();
+    private final Map<String, String> headers = new HashMap<>();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private String queryString;
+
+    public BenchHttpServletRequest(String method, String requestURI) {
+        super(unsupported());
+        this.method = method;
+        this.requestURI = requestURI;
+    }
+
+    public BenchHttpServletRequest param(String name, String... values) {
+        parameters.put(name, values);
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String[]> entry : parameters.entrySet()) {
+            for (String value : entry.getValue()) {
+                if (query.length() > 0) {
+                    query.append('&');
+                }
+                query.append(entry.getKey()).append('=').append(value);
+            }
+        }
+        queryString = query.toString();
+        return this;
+    }
+
+    public BenchHttpServletRequest header(String name, String value) {
+        headers.put(name.toLowerCase(), value);
+        return this;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestURI;
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getServletPath() {
+        return requestURI;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        String value = getHeader(name);
+        return value == null ? Collections.<String>emptyEnumeration() : Collections.enumeration(Collections.singletonList(value));
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Long.parseLong(value);
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return "UTF-8";
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    private static HttpServletRequest unsupported() {
+        return (HttpServletRequest) Proxy.newProxyInstance(BenchHttpServletRequest.class.getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                    throw new UnsupportedOperationException(m.getName());
+                });
+    }
+}
@@ -0,0 +1,203 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+* 基准测试用的内存 response：输出写入可复用的字节缓冲区
+* @author JiaoFanTing
+**/
+public class BenchHttpServletResponse extends HttpServletResponseWrapper {
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+    private final Map<String, String> headers = new HashMap<>();
+    private final ServletOutputStream outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            body.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("setWriteListener");
+        }
+    };
+    private PrintWriter writer;
+    private String contentType;
+    private int status = SC_OK;
+
+    public BenchHttpServletResponse() {
+        super(unsupported());
+    }
+
+    /**
+     * 在两次调用之间清空状态
+     */
+    @Override
+    public void reset() {
+        body.reset();
+        headers.clear();
+        writer = null;
+        contentType = null;
+        status = SC_OK;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public byte[] getBody() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return body.toByteArray();
+    }
+
+    public int getBodyLength() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return body.size();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        body.reset();
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return "UTF-8";
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        this.contentType = type;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        headers.put("content-length", String.valueOf(len));
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        headers.put("content-length", String.valueOf(len));
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        this.status = sc;
+    }
+
+    @Override
+    public void sendError(int sc) {
+        this.status = sc;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        this.status = sc;
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name.toLowerCase());
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers.put(name.toLowerCase(), value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers.merge(name.toLowerCase(), value, (a, b) -> a + ", " + b);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, String.valueOf(date));
+    }
+
+    private static HttpServletResponse unsupported() {
+        return (HttpServletResponse) Proxy.newProxyInstance(BenchHttpServletResponse.class.getClassLoader(),
+                new Class[]{HttpServletResponse.class}, (proxy, m, args) -> {
+                    throw new UnsupportedOperationException(m.getName());
+                });
+    }
+}
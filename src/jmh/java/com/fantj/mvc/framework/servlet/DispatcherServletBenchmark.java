@@ -0,0 +1,105 @@
+package com.fantj.mvc.framework.servlet;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+* DispatcherServlet 端到端：内存 request/response，覆盖查找、绑定、调用、渲染全流程
+* @author JiaoFanTing
+**/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherServletBenchmark {
+
+    private DispatcherServlet servlet;
+
+    private BenchHttpServletRequest cached;
+    private BenchHttpServletRequest plain;
+    private BenchHttpServletRequest params;
+    private BenchHttpServletRequest json;
+    private BenchHttpServletRequest notModified;
+    private BenchHttpServletRequest notFound;
+    private BenchHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        servlet = new DispatcherServlet();
+        servlet.init(servletConfig("classpath:bench-sequential.properties"));
+        cached = new BenchHttpServletRequest("GET", "/web/hello.json");
+        plain = new BenchHttpServletRequest("GET", "/bench/plain.json");
+        params = new BenchHttpServletRequest("GET", "/bench/params.json").param("id", "42").param("name", "fantj");
+        json = new BenchHttpServletRequest("GET", "/bench/user.json");
+        notFound = new BenchHttpServletRequest("GET", "/bench/none.json");
+        response = new BenchHttpServletResponse();
+        // 带上首次响应的 ETag，后续请求都是 304
+        dispatch(plain);
+        notModified = new BenchHttpServletRequest("GET", "/bench/plain.json").header("If-None-Match", response.getHeader("ETag"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+    }
+
+    @Benchmark
+    public int cachedView() throws Exception {
+        return dispatch(cached);
+    }
+
+    @Benchmark
+    public int plainView() throws Exception {
+        return dispatch(plain);
+    }
+
+    @Benchmark
+    public int boundParams() throws Exception {
+        return dispatch(params);
+    }
+
+    @Benchmark
+    public int plainViewNotModified() throws Exception {
+        return dispatch(notModified);
+    }
+
+    @Benchmark
+    public int jsonBody() throws Exception {
+        return dispatch(json);
+    }
+
+    @Benchmark
+    public int notFound() throws Exception {
+        return dispatch(notFound);
+    }
+
+    private int dispatch(BenchHttpServletRequest request) throws Exception {
+        response.reset();
+        servlet.service(request, response);
+        return response.getBodyLength();
+    }
+
+    static ServletConfig servletConfig(String location) {
+        ServletContext servletContext = (ServletContext) Proxy.newProxyInstance(DispatcherServletBenchmark.class.getClassLoader(),
+                new Class[]{ServletContext.class}, (proxy, m, args) -> null);
+        return (ServletConfig) Proxy.newProxyInstance(DispatcherServletBenchmark.class.getClassLoader(),
+                new Class[]{ServletConfig.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getServletContext":
+                            return servletContext;
+                        case "getInitParameter":
+                            return "contextConfigLocation".equals(args[0]) ? location : null;
+                        case "getServletName":
+                            return "bench";
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,144 @@
+package com.fantj.mvc.framework.servlet;
+
+import com.fantj.mvc.framework.annotation.RequestParam;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+* handler 调用与参数绑定：MethodHandle 调用器、解析计划与原先反射实现的对比
+* 加上 -prof gc 可以看到每次调用的分配字节数
+* @author JiaoFanTing
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerInvocationBenchmark {
+
+    /**
+     * 客户端额外携带的无关参数个数
+     */
+    @Param({"0", "20"})
+    public int extraParams;
+
+    private final BenchTarget target = new BenchTarget();
+    private Method method;
+    private HandlerInvoker invoker;
+    private ArgumentResolver[] resolvers;
+    private Map<String, Integer> legacyParamMapping;
+    private Object[] args;
+
+    private BenchHttpServletRequest request;
+    private BenchHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        method = BenchTarget.class.getMethod("handle", int.class, String.class, HttpServletRequest.class);
+        invoker = HandlerInvoker.bind(method);
+        resolvers = ArgumentResolvers.plan(method.getParameters());
+        legacyParamMapping = new HashMap<>();
+        legacyParamMapping.put("id", 0);
+        legacyParamMapping.put("name", 1);
+        legacyParamMapping.put(HttpServletRequest.class.getName(), 2);
+        request = new BenchHttpServletRequest("GET", "/bench/params.json").param("id", "42").param("name", "fantj");
+        for (int i = 0; i < extraParams; i++) {
+            request.param("extra" + i, "v" + i);
+        }
+        response = new BenchHttpServletResponse();
+        args = new Object[]{42, "fantj", request};
+    }
+
+    @Benchmark
+    public Object reflectiveInvoke() throws Exception {
+        return method.invoke(target, args);
+    }
+
+    @Benchmark
+    public Object methodHandleInvoke() throws Exception {
+        return invoker.invoke(target, args);
+    }
+
+    @Benchmark
+    public Object[] resolverPlanBinding() {
+        Object[] values = new Object[resolvers.length];
+        for (int i = 0; i < resolvers.length; i++) {
+            values[i] = resolvers[i].resolve(request, response);
+        }
+        return values;
+    }
+
+    /**
+     * 绑定并调用，每次分配参数数组
+     */
+    @Benchmark
+    public Object allocatingHandle() throws Exception {
+        Object[] values = new Object[resolvers.length];
+        for (int i = 0; i < resolvers.length; i++) {
+            values[i] = resolvers[i].resolve(request, response);
+        }
+        return invoker.invoke(target, values);
+    }
+
+    /**
+     * 绑定并调用，参数数组取自 DispatchBuffers，调用后归还
+     */
+    @Benchmark
+    public Object pooledHandle() throws Exception {
+        DispatchBuffers buffers = DispatchBuffers.current();
+        Object[] values = buffers.arguments(resolvers.length);
+        try {
+            for (int i = 0; i < resolvers.length; i++) {
+                values[i] = resolvers[i].resolve(request, response);
+            }
+            return invoker.invoke(target, values);
+        } finally {
+            buffers.releaseArguments(values);
+        }
+    }
+
+    /**
+     * 原先 HandlerAdapter.handle 的参数绑定
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object[] legacyBinding() {
+        Map<String, String[]> reqParam = request.getParameterMap();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Object[] paramValue = new Object[parameterTypes.length];
+        for (Map.Entry<String, String[]> entry : reqParam.entrySet()) {
+            String key = entry.getKey();
+            String value = Arrays.toString(entry.getValue()).trim().replaceAll("[\\[]]", "");
+            if (!legacyParamMapping.containsKey(key)) {
+                continue;
+            }
+            int index = legacyParamMapping.get(key);
+            Class<?> type = parameterTypes[index];
+            // 原实现的正则并不能去掉 [ ]，这里保留其开销，数值直接取原始值转换
+            paramValue[index] = type == String.class ? value : Integer.valueOf(entry.getValue()[0]);
+        }
+        String reqName = HttpServletRequest.class.getName();
+        if (legacyParamMapping.containsKey(reqName)) {
+            paramValue[legacyParamMapping.get(reqName)] = request;
+        }
+        String respName = HttpServletResponse.class.getName();
+        if (legacyParamMapping.containsKey(respName)) {
+            paramValue[legacyParamMapping.get(respName)] = response;
+        }
+        return paramValue;
+    }
+
+    public static class BenchTarget {
+        public Object handle(@RequestParam("id") int id, @RequestParam("name") String name, HttpServletRequest request) {
+            return name;
+        }
+    }
+}
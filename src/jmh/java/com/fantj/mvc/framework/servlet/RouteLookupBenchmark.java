@@ -0,0 +1,78 @@
+package com.fantj.mvc.framework.servlet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+* 路由查找：RouteTrie 与原先逐个正则匹配的对比，路由数从 10 到 10000
+* @author JiaoFanTing
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteLookupBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int routes;
+
+    private RouteTrie<String> trie;
+    private List<Pattern> patterns;
+
+    private String literalHit;
+    private String regexHit;
+    private String miss;
+
+    @Setup
+    public void setUp() {
+        trie = new RouteTrie<>();
+        patterns = new ArrayList<>();
+        for (int i = 0; i < routes; i++) {
+            // 每 10 个路由中有 1 个带正则
+            String path = i % 10 == 9
+                    ? "/app/c" + i + "/item/\\d+.json"
+                    : "/app/c" + i + "/action.json";
+            trie.add(path, path);
+            patterns.add(Pattern.compile(path));
+        }
+        // 取最后注册的路由，线性扫描的最坏情况
+        int last = routes - 2;
+        literalHit = "/app/c" + last + "/action.json";
+        regexHit = "/app/c" + (routes - 1) + "/item/42.json";
+        miss = "/app/unknown/action.json";
+    }
+
+    @Benchmark
+    public String trieLiteral() {
+        return trie.match(literalHit);
+    }
+
+    @Benchmark
+    public String trieRegexFallback() {
+        return trie.match(regexHit);
+    }
+
+    @Benchmark
+    public String trieMiss() {
+        return trie.match(miss);
+    }
+
+    /**
+     * 原先 getHandler 的实现：逐个正则匹配
+     */
+    @Benchmark
+    public Pattern linearScanLiteral() {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(literalHit).matches()) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+}
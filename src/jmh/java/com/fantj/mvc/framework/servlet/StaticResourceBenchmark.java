@@ -0,0 +1,106 @@
+package com.fantj.mvc.framework.servlet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* 静态文件：缓存命中、transferTo 写入响应流（不缓存）、sendfile 交给容器，与放在模板目录下按 ViewResolver.parse 逐行处理的对比
+* @author JiaoFanTing
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticResourceBenchmark {
+
+    /**
+     * 文件字节数
+     */
+    @Param({"1024", "65536"})
+    public int size;
+
+    private File directory;
+    private File file;
+    private StaticResources cached;
+    private StaticResources uncached;
+    private BenchHttpServletRequest request;
+    private BenchHttpServletRequest sendfileRequest;
+    private BenchHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bench-static").toFile();
+        file = new File(directory, "app.css");
+        StringBuilder source = new StringBuilder();
+        while (source.length() < size) {
+            source.append("body { color: #333; margin: 0 auto; }\n");
+        }
+        source.setLength(size);
+        Files.write(file.toPath(), source.toString().getBytes(Template.CHARSET));
+        ClassLoader classLoader = getClass().getClassLoader();
+        cached = new StaticResources(classLoader, "/static/", directory.getAbsolutePath(), 16 * 1024 * 1024, size);
+        uncached = new StaticResources(classLoader, "/static/", directory.getAbsolutePath(), 16 * 1024 * 1024, 0);
+        request = new BenchHttpServletRequest("GET", "/static/app.css");
+        sendfileRequest = new BenchHttpServletRequest("GET", "/static/app.css");
+        sendfileRequest.setAttribute(StaticResources.SENDFILE_SUPPORT, Boolean.TRUE);
+        response = new BenchHttpServletResponse();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public int cachedHit() throws IOException {
+        response.reset();
+        cached.serve(request, response);
+        return response.getBodyLength();
+    }
+
+    @Benchmark
+    public int transferToStream() throws IOException {
+        response.reset();
+        uncached.serve(request, response);
+        return response.getBodyLength();
+    }
+
+    /**
+     * 只设置 sendfile 属性，发送由容器完成
+     */
+    @Benchmark
+    public Object sendfile() throws IOException {
+        response.reset();
+        uncached.serve(sendfileRequest, response);
+        return sendfileRequest.getAttribute(StaticResources.SENDFILE_END);
+    }
+
+    /**
+     * 原先放在模板目录下，经 ViewResolver.parse 逐行读取与正则替换
+     */
+    @Benchmark
+    public int legacyParse() throws IOException {
+        StringBuffer result = new StringBuffer();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            String line;
+            while (null != (line = raf.readLine())) {
+                Matcher matcher = Pattern.compile("\\$\\{(.+?)\\}", Pattern.CASE_INSENSITIVE).matcher(line);
+                while (matcher.find()) {
+                    line = line.replaceAll("\\$\\{" + matcher.group(1) + "\\}", "");
+                }
+                result.append(line);
+            }
+        }
+        return result.toString().length();
+    }
+}
@@ -0,0 +1,100 @@
+package com.fantj.mvc.framework.servlet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* 模板渲染：预编译模板与原先 ViewResolver.parse（每次读文件 + 正则替换）的对比
+* @author JiaoFanTing
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateRenderBenchmark {
+
+    /**
+     * 模板行数，每行一个占位符
+     */
+    @Param({"1", "100", "1000"})
+    public int lines;
+
+    private File file;
+    private Template template;
+    private Map<String, Object> model;
+    private StringBuilder buffer;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder source = new StringBuilder();
+        model = new HashMap<>();
+        for (int i = 0; i < lines; i++) {
+            source.append("<p>line ").append(i).append(" value=${key").append(i).append("} end</p>\n");
+            model.put("key" + i, "value" + i);
+        }
+        file = File.createTempFile("bench", ".fantj");
+        file.deleteOnExit();
+        Files.write(file.toPath(), source.toString().getBytes(Template.CHARSET));
+        template = Template.compile(file);
+        buffer = new StringBuilder();
+        out = new ByteArrayOutputStream();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int compiledToString() {
+        buffer.setLength(0);
+        template.render(model, buffer);
+        return buffer.toString().length();
+    }
+
+    @Benchmark
+    public int compiledToStream() throws IOException {
+        out.reset();
+        template.render(model, out);
+        return out.size();
+    }
+
+    /**
+     * 原先 ViewResolver.parse 的实现
+     */
+    @Benchmark
+    public int legacyParse() throws IOException {
+        StringBuffer result = new StringBuffer();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            String line;
+            while (null != (line = raf.readLine())) {
+                Matcher matcher = Pattern.compile("\\$\\{(.+?)\\}", Pattern.CASE_INSENSITIVE).matcher(line);
+                while (matcher.find()) {
+                    for (int i = 0; i < matcher.groupCount(); i++) {
+                        String key = matcher.group(i).replaceAll("\\$\\{|\\}", "");
+                        Object value = model.get(key);
+                        if (null == value) {
+                            continue;
+                        }
+                        line = line.replaceAll("\\$\\{" + key + "\\}", String.valueOf(value));
+                    }
+                }
+                result.append(line);
+            }
+        }
+        return result.toString().length();
+    }
+}
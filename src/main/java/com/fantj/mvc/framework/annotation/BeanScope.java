@@ -0,0 +1,19 @@
+package com.fantj.mvc.framework.annotation;
+
+/**
+ * bean 的作用域，用于 @Controller/@Service 的 scope
+ */
+public enum BeanScope {
+    /**
+     * 容器中只有一个实例（默认）
+     */
+    SINGLETON,
+    /**
+     * 每次获取或注入都创建新实例
+     */
+    PROTOTYPE,
+    /**
+     * 同一个请求内共享一个实例，只能在请求处理过程中获取
+     */
+    REQUEST
+}
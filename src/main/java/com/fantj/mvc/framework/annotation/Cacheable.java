@@ -0,0 +1,27 @@
+package com.fantj.mvc.framework.annotation;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 标记 @RequestMapping 方法的响应可以缓存
+ * 相同 key 的请求在 ttl 内直接返回缓存的渲染结果，不再调用 handler
+ * 只缓存 GET/HEAD 请求，其他方法的参数可能来自请求体，每次都调用 handler
+ * 对返回 CompletionStage 或标记了 {@link VirtualThread} 的 handler 无效，启动时输出警告
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Cacheable {
+    /**
+     * 缓存有效期
+     */
+    long ttl() default 60;
+
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 组成缓存 key 的请求参数名，为空时使用整个查询字符串
+     */
+    String[] key() default {};
+}
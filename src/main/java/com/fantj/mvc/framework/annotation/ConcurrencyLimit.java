@@ -0,0 +1,17 @@
+package com.fantj.mvc.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 限制 handler 同时处理的请求数，可用于 @Controller 类或 @RequestMapping 方法
+ * 超出上限的请求不排队，直接响应 503 并带上 Retry-After
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ConcurrencyLimit {
+    /**
+     * 最大并发请求数
+     */
+    int value();
+}
@@ -2,6 +2,9 @@ package com.fantj.mvc.framework.annotation;
 
 import java.lang.annotation.*;
 
+/**
+ * 标记 @RequestMapping 方法的返回值直接以 json 写入响应，不经过视图解析
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
@@ -8,4 +8,9 @@ import java.lang.annotation.*;
 @Inherited
 public @interface Service {
     String value() default "";
+
+    /**
+     * 作用域，非单例的 bean 使用时才创建，可以有状态而不必线程安全
+     */
+    BeanScope scope() default BeanScope.SINGLETON;
 }
@@ -0,0 +1,13 @@
+package com.fantj.mvc.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记 handler 在虚拟线程上调用并渲染视图，可用于 @Controller 类或 @RequestMapping 方法
+ * 运行在不支持虚拟线程的 JDK 上时退化为有界的平台线程池
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface VirtualThread {
+}
@@ -0,0 +1,184 @@
+package com.fantj.mvc.framework.annotation.processor;
+
+import com.fantj.mvc.framework.annotation.Autowired;
+import com.fantj.mvc.framework.annotation.Controller;
+import com.fantj.mvc.framework.annotation.Service;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* 编译期组件索引 -- 把 @Controller/@Service 类及其 @Autowired 字段写到 {@link #INDEX_LOCATION}
+* 运行时 ApplicationContext 直接读取索引，不再扫描 classpath
+*
+* 索引为按行的文本，字段之间用 tab 分隔：
+* <pre>
+* C  类名  bean名
+* S  类名  bean名  接口1,接口2
+* F  类名  字段名  字段类型  注入的bean名
+* </pre>
+* @author JiaoFanTing
+**/
+@SupportedAnnotationTypes({
+        "com.fantj.mvc.framework.annotation.Controller",
+        "com.fantj.mvc.framework.annotation.Service"
+})
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_LOCATION = "META-INF/easy-mvc.components";
+
+    public static final String CONTROLLER = "C";
+    public static final String SERVICE = "S";
+    public static final String FIELD = "F";
+    public static final String SEPARATOR = "\t";
+
+    /**
+     * 类名 -> 该类对应的索引行
+     */
+    private final Map<String, List<String>> entries = new LinkedHashMap<>();
+
+    private boolean loaded;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (!loaded) {
+            loadPrevious();
+            loaded = true;
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element);
+        }
+        if (roundEnv.processingOver()) {
+            write();
+        }
+        return false;
+    }
+
+    private void collect(Element element) {
+        if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        // 静态内部类
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collect(nested);
+        }
+        if (element.getKind() != ElementKind.CLASS) {
+            return;
+        }
+        String className = binaryName(type);
+        // 重新编译的类以本次结果为准
+        entries.remove(className);
+        List<String> lines = new ArrayList<>();
+        Controller controller = type.getAnnotation(Controller.class);
+        Service service = type.getAnnotation(Service.class);
+        if (controller != null) {
+            lines.add(join(CONTROLLER, className, controller.value()));
+        } else if (service != null) {
+            StringBuilder interfaces = new StringBuilder();
+            for (TypeMirror i : type.getInterfaces()) {
+                if (interfaces.length() > 0) {
+                    interfaces.append(',');
+                }
+                interfaces.append(binaryName(i));
+            }
+            lines.add(join(SERVICE, className, service.value(), interfaces.toString()));
+        } else {
+            return;
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Autowired autowired = field.getAnnotation(Autowired.class);
+            if (autowired == null) {
+                continue;
+            }
+            lines.add(join(FIELD, className, field.getSimpleName().toString(),
+                    binaryName(field.asType()), autowired.value().trim()));
+        }
+        entries.put(className, lines);
+    }
+
+    /**
+     * 增量编译时只会处理变动的类，先把上一次的索引读进来
+     */
+    private void loadPrevious() {
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(SEPARATOR, -1);
+                    if (parts.length < 2) {
+                        continue;
+                    }
+                    // 已经被删除的类不再保留
+                    if (processingEnv.getElementUtils().getTypeElement(parts[1].replace('$', '.')) == null) {
+                        continue;
+                    }
+                    entries.computeIfAbsent(parts[1], k -> new ArrayList<>()).add(line);
+                }
+            }
+        } catch (IOException e) {
+            // 没有旧索引
+        }
+    }
+
+    private void write() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (List<String> lines : entries.values()) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "无法写入组件索引: " + e);
+        }
+    }
+
+    private String binaryName(TypeMirror type) {
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+        if (erasure instanceof DeclaredType) {
+            return binaryName((TypeElement) ((DeclaredType) erasure).asElement());
+        }
+        return erasure.toString();
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private static String join(String... parts) {
+        return String.join(SEPARATOR, parts);
+    }
+}
@@ -1,6 +1,7 @@
 package com.fantj.mvc.framework.context;
 
 import com.fantj.mvc.framework.annotation.Autowired;
+import com.fantj.mvc.framework.annotation.BeanScope;
 import com.fantj.mvc.framework.annotation.Controller;
 import com.fantj.mvc.framework.annotation.Service;
 
@@ -9,18 +10,26 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
 * 应用上下文 -- 提供bean注册、依赖注入、配置解析功能
 * @author JiaoFanTing
 **/
 public class ApplicationContext {
+
+    private static final String DEFAULT_LOCATION = "application.properties";
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String CLASS_SUFFIX = ".class";
+
     /**
      * 存放示例对象的map
      */
-    private Map<String, Object> instanceMapping = new HashMap<>();
+    private Map<String, Object> instanceMapping = new ConcurrentHashMap<>();
     /**
      * 存放class信息的list
      */
@@ -29,6 +38,34 @@ public class ApplicationContext {
      * 读取配置文件的properties
      */
     private Properties config = new Properties();
+    /**
+     * 编译期生成的组件索引，没有索引时为 null
+     */
+    private ComponentIndex index;
+    /**
+     * bean 定义
+     */
+    private List<BeanDefinition> definitions = new ArrayList<>();
+    /**
+     * bean 名 -> bean 定义
+     */
+    private Map<String, BeanDefinition> definitionMapping = new HashMap<>();
+    /**
+     * request 作用域的 bean 个数，即 {@link RequestScope} 的大小
+     */
+    private int requestBeanCount;
+    /**
+     * 是否懒加载
+     */
+    private boolean lazy;
+    /**
+     * 懒加载创建 bean 时使用的锁，只在 bean 第一次创建时获取
+     */
+    private final Object lazyCreationLock = new Object();
+    /**
+     * 每个 bean 的初始化耗时（纳秒），包含创建和注入
+     */
+    private Map<String, Long> initTimings = new ConcurrentHashMap<>();
 
     /**
      * 构造方法：
@@ -36,25 +73,62 @@ public class ApplicationContext {
      * @author JiaoFanTing
      */
     public ApplicationContext(String location) {
-        InputStream is;
-        try {
+        try (InputStream is = openConfig(location)) {
             // 1. 载入配置文件
-//            InputStream is = this.getClass().getClassLoader().getResourceAsStream(location);
-            is = new FileInputStream("D:\\workspace\\easy-springmvc\\src\\main\\resources\\application.properties");
             config.load(is);
             // 2. 获取配置属性-- 扫描的包
             String packageName = config.getProperty("packageScan");
-            // 3. 注册
-            doRegister(packageName);
-            // 4. 初始化IOC
-            doCreateBean();
-            // 5. 依赖注入
-            populate();
+            // 3. 注册：优先使用编译期生成的组件索引，没有索引时才扫描包
+            index = ComponentIndex.load(this.getClass().getClassLoader());
+            if (index != null) {
+                classCache.addAll(index.getClassNames(packageName));
+            } else {
+                doRegister(packageName);
+            }
+            // 4. 解析 bean 定义
+            doLoadDefinitions();
+            checkScopes();
+            String mode = config.getProperty("beanInitMode");
+            if ("lazy".equals(mode)) {
+                // 5. 懒加载：只注册定义，第一次获取时才创建
+                lazy = true;
+            } else if ("parallel".equals(mode)) {
+                // 5. 并行初始化IOC并注入
+                doCreateBeanParallel();
+            } else {
+                // 5. 初始化IOC
+                doCreateBean();
+                // 6. 依赖注入
+                populate();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        if (!Boolean.parseBoolean(config.getProperty("beanInitLog", "true"))) {
+            return;
+        }
+        for (Map.Entry<String, Long> timing: initTimings.entrySet()) {
+            System.out.println("Bean: " + timing.getKey() + " " + timing.getValue() / 1000 + "us");
+        }
         System.out.println("IOC 容器已经初始化");
     }
+    /**
+    * 打开配置文件：classpath: 开头的从 classpath 读取，否则先查 classpath 再按文件路径读取
+    **/
+    private InputStream openConfig(String location) throws IOException {
+        if (location == null) {
+            location = DEFAULT_LOCATION;
+        }
+        if (location.startsWith(CLASSPATH_PREFIX)) {
+            location = location.substring(CLASSPATH_PREFIX.length());
+        }
+        InputStream is = this.getClass().getClassLoader().getResourceAsStream(location);
+        if (is != null) {
+            return is;
+        }
+        return new FileInputStream(location);
+    }
+
     /**
     * 依赖注入
     * @author JiaoFanTing
@@ -64,30 +138,23 @@ public class ApplicationContext {
         if (instanceMapping.isEmpty()){
             return;
         }
-        // 2. 遍历 每个bean的字段
-        for (Map.Entry<String,Object> entry: instanceMapping.entrySet()){
-            // 获取每个bean的fields
-            Field[] fields = entry.getValue().getClass().getDeclaredFields();
-            // 遍历判断是否需要依赖注入
-            for (Field field: fields){
-
-                if (field.isAnnotationPresent(Autowired.class)){
-                    Autowired autowired = field.getAnnotation(Autowired.class);
-                    String id = autowired.value().trim();
-                    if (id.equals("")){
-                        // 如果用户没有自定义bean名， 则默认用类型来注入
-                        id = field.getType().getName();
-                    }
-                    field.setAccessible(true);
-
-                    try {
-                        // entry.getValue() 代表的就是当前的类对象
-                        field.set(entry.getValue(), instanceMapping.get(id));
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                }
+        // 2. 遍历 每个单例bean的注入点，每个类只注入一次；构造失败的 bean 没有实例，跳过
+        for (BeanDefinition definition: definitions){
+            if (!definition.isSingleton() || definition.instance == null) {
+                continue;
             }
+            long start = System.nanoTime();
+            inject(definition.instance, definition, null);
+            initTimings.merge(definition.beanClass.getName(), System.nanoTime() - start, Long::sum);
+        }
+    }
+
+    /**
+    * 给单个bean注入依赖，prototype 依赖每次注入都新建
+    **/
+    private void inject(Object bean, BeanDefinition definition, RequestScope scope) {
+        for (BeanDefinition.Injection injection: definition.injections){
+            injection.set(bean, getBean(injection.beanId, scope));
         }
     }
 
@@ -96,38 +163,184 @@ public class ApplicationContext {
     * @author JiaoFanTing
     **/
     private void doCreateBean() {
+        // 遍历 bean 定义并创建实例 存放到 instanceMapping，一个类只创建一个实例；非单例 bean 使用时才创建
+        for (BeanDefinition definition: definitions) {
+            if (!definition.isSingleton()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                definition.instance = definition.newInstance();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+                continue;
+            }
+            initTimings.put(definition.beanClass.getName(), System.nanoTime() - start);
+            register(definition);
+        }
+    }
+
+    /**
+    * 并行创建bean：按 @Autowired 依赖关系构建任务图，在 ForkJoinPool 上执行
+    **/
+    private void doCreateBeanParallel() {
+        int parallelism = Integer.parseInt(config.getProperty("beanInitParallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        List<BeanDefinition> singletons = new ArrayList<>();
+        for (BeanDefinition definition: definitions) {
+            if (definition.isSingleton()) {
+                singletons.add(definition);
+            }
+        }
+        new ParallelBeanInitializer(singletons, parallelism, initTimings).run();
+        for (BeanDefinition definition: singletons) {
+            if (definition.instance != null) {
+                register(definition);
+            }
+        }
+        // prototype 依赖可能还依赖其他单例，等单例全部创建后再注入
+        for (BeanDefinition definition: singletons) {
+            if (definition.instance == null) {
+                continue;
+            }
+            for (BeanDefinition.Injection injection: definition.injections) {
+                BeanDefinition dependency = definitionMapping.get(injection.beanId);
+                if (dependency != null && !dependency.isSingleton()) {
+                    injection.set(definition.instance, getBean(injection.beanId));
+                }
+            }
+        }
+    }
+
+    /**
+    * 把 bean 以它的所有名字放入 instanceMapping
+    **/
+    private void register(BeanDefinition definition) {
+        for (String name: definition.names) {
+            instanceMapping.put(name, definition.instance);
+        }
+    }
+
+    /**
+    * 解析 bean 定义
+    **/
+    private void doLoadDefinitions() {
         // 1. 检查是否有类信息注册缓存
         if (classCache == null) {
             return;
         }
-        // 2. 遍历classCache 并创建实例 存放到 instanceMapping
-        try {
-            for (String className : classCache) {
+        // 2. 遍历classCache 并生成 bean 定义
+        for (String className : classCache) {
+            try {
                 // 反射加载类
                 Class<?> clazz = Class.forName(className);
+                List<String> names = new ArrayList<>();
+                BeanScope scope = BeanScope.SINGLETON;
                 // 加了需要加入IOC容器的注解，才进行初始化
                 if (clazz.isAnnotationPresent(Controller.class)){
-                    // 类的首字母小写，并存入 instanceMapping
-                    String id = firstCharToLower(clazz.getSimpleName());
-                    instanceMapping.put(id, clazz.newInstance());
+                    // 类的首字母小写
+                    names.add(firstCharToLower(clazz.getSimpleName()));
+                    scope = clazz.getAnnotation(Controller.class).scope();
                 }else if (clazz.isAnnotationPresent(Service.class)){
                     // service注解就有了 用户自定义名字的处理
                     Service service = clazz.getAnnotation(Service.class);
+                    scope = service.scope();
                     if (!service.value().equals("")){
-                        // 如果用户未自定义名
-                        instanceMapping.put(service.value(), clazz.newInstance());
-                        continue;
-                    }
-                    // 再加载其接口类
-                    Class<?>[] interfaces = clazz.getInterfaces();
-                    for (Class<?> i: interfaces){
-                        instanceMapping.put(i.getName(), clazz.newInstance());
+                        names.add(service.value());
+                    } else {
+                        // 用户未自定义名，按其接口类注册
+                        for (Class<?> i: clazz.getInterfaces()){
+                            names.add(i.getName());
+                        }
                     }
                 }
-            }
-         }catch(ClassNotFoundException | IllegalAccessException | InstantiationException e){
+                if (names.isEmpty()) {
+                    continue;
+                }
+                BeanDefinition definition = new BeanDefinition(clazz, names, resolveInjections(clazz), scope);
+                if (scope == BeanScope.REQUEST) {
+                    definition.requestSlot = requestBeanCount++;
+                }
+                definitions.add(definition);
+                for (String name: names) {
+                    definitionMapping.put(name, definition);
+                }
+            } catch (ClassNotFoundException | NoSuchMethodException | NoSuchFieldException | IllegalAccessException e) {
                 e.printStackTrace();
-         }
+            }
+        }
+    }
+
+    /**
+    * 检查作用域：单例只在启动时注入一次，不能直接或经由 prototype 依赖 request bean；prototype 之间不能循环依赖
+    **/
+    private void checkScopes() {
+        for (BeanDefinition definition: definitions) {
+            if (definition.isSingleton()) {
+                checkRequestDependency(definition, definition, new HashSet<>());
+            }
+            if (definition.scope == BeanScope.PROTOTYPE) {
+                checkPrototypeCycle(definition, new HashSet<>());
+            }
+        }
+    }
+
+    /**
+    * 沿 prototype 依赖查找 request bean：注入单例时创建的 prototype 不在请求中，也拿不到 request bean
+    **/
+    private void checkRequestDependency(BeanDefinition singleton, BeanDefinition definition, Set<BeanDefinition> visited) {
+        for (BeanDefinition.Injection injection: definition.injections) {
+            BeanDefinition dependency = definitionMapping.get(injection.beanId);
+            if (dependency == null) {
+                continue;
+            }
+            if (dependency.scope == BeanScope.REQUEST) {
+                throw new IllegalStateException("单例 bean " + singleton.beanClass.getName()
+                        + " 不能注入 request 作用域的 bean: " + injection.beanId
+                        + (definition == singleton ? "" : "（经由 prototype bean " + definition.beanClass.getName() + "）"));
+            }
+            if (dependency.scope == BeanScope.PROTOTYPE && visited.add(dependency)) {
+                checkRequestDependency(singleton, dependency, visited);
+            }
+        }
+    }
+
+    private void checkPrototypeCycle(BeanDefinition definition, Set<BeanDefinition> path) {
+        if (!path.add(definition)) {
+            throw new IllegalStateException("prototype bean 循环依赖: " + definition.beanClass.getName());
+        }
+        for (BeanDefinition.Injection injection: definition.injections) {
+            BeanDefinition dependency = definitionMapping.get(injection.beanId);
+            if (dependency != null && dependency.scope == BeanScope.PROTOTYPE) {
+                checkPrototypeCycle(dependency, path);
+            }
+        }
+        path.remove(definition);
+    }
+
+    /**
+    * 解析类上的 @Autowired 字段，有索引时直接按索引取字段
+    **/
+    private List<BeanDefinition.Injection> resolveInjections(Class<?> clazz) throws NoSuchFieldException, IllegalAccessException {
+        List<BeanDefinition.Injection> injections = new ArrayList<>();
+        if (index != null) {
+            for (ComponentIndex.InjectionPoint point: index.getInjectionPoints(clazz.getName())){
+                injections.add(new BeanDefinition.Injection(clazz.getDeclaredField(point.field), point.beanId()));
+            }
+            return injections;
+        }
+        for (Field field: clazz.getDeclaredFields()){
+            if (!field.isAnnotationPresent(Autowired.class)){
+                continue;
+            }
+            String id = field.getAnnotation(Autowired.class).value().trim();
+            if (id.equals("")){
+                // 如果用户没有自定义bean名， 则默认用类型来注入
+                id = field.getType().getName();
+            }
+            injections.add(new BeanDefinition.Injection(field, id));
+        }
+        return injections;
     }
 
     private String firstCharToLower(String simpleName) {
@@ -142,30 +355,158 @@ public class ApplicationContext {
     * @param packageName 包名
     **/
     private void doRegister(String packageName) {
-        // 1. 根据包名获取到 资源路径， 以便递归加载类信息
-        URL resource = this.getClass().getClassLoader().getResource("/" + packageName.replaceAll("\\.", "/"));
+        // 1. 根据包名获取到 资源路径， 以便递归加载类信息；ClassLoader 的资源名不以 / 开头
+        URL resource = this.getClass().getClassLoader().getResource(packageName.replace('.', '/'));
+        File[] files = null;
+        if (resource != null && "file".equals(resource.getProtocol())) {
+            try {
+                files = new File(resource.toURI()).listFiles();
+            } catch (URISyntaxException e) {
+                // 按找不到处理
+            }
+        }
+        if (files == null) {
+            System.err.println("没有组件索引，且扫描的包不在文件系统目录中: " + packageName);
+            return;
+        }
         // 2. 递归加载类信息
-        File files = new File(Objects.requireNonNull(resource).getFile());
-        for (File file : Objects.requireNonNull(files.listFiles())) {
+        for (File file : files) {
             // 判断是否是文件夹
             if (file.isDirectory()) {
                 // 如果是文件夹，递归调用
                 doRegister(packageName + "." + file.getName());
-            } else {
-                // 如果是文件， 将class去掉 ，把全限定文件名 放入classCache
-                classCache.add(packageName + "." + file.getName().replaceAll(".class", "").trim());
+            } else if (file.getName().endsWith(CLASS_SUFFIX)) {
+                // 如果是类文件， 去掉 .class 后缀，把全限定文件名 放入classCache
+                String name = file.getName();
+                classCache.add(packageName + "." + name.substring(0, name.length() - CLASS_SUFFIX.length()));
             }
         }
     }
 
     /**
-     * 获取所有实例对象
+     * 根据名字获取 bean，懒加载模式下第一次获取时创建；prototype bean 每次都新建
+     * request 作用域的 bean 需要通过 {@link #getBean(String, RequestScope)} 获取
+     */
+    public Object getBean(String name) {
+        return getBean(name, null);
+    }
+
+    /**
+     * 根据名字获取 bean，request 作用域的 bean 从 scope 中取，没有时创建并放入 scope
+     * @param scope 当前请求的作用域，不在请求中时为 null
+     */
+    public Object getBean(String name, RequestScope scope) {
+        BeanDefinition definition = definitionMapping.get(name);
+        if (definition == null) {
+            return null;
+        }
+        switch (definition.scope) {
+            case PROTOTYPE:
+                return create(definition, scope);
+            case REQUEST:
+                if (scope == null) {
+                    throw new IllegalStateException("request 作用域的 bean 只能在请求中获取: " + name);
+                }
+                Object bean = scope.get(definition.requestSlot);
+                return bean != null ? bean : create(definition, scope);
+            default:
+                break;
+        }
+        Object instance = definition.instance;
+        if (instance != null || !lazy) {
+            return instance;
+        }
+        return createLazily(definition);
+    }
+
+    /**
+     * 创建非单例 bean 并注入，request bean 先放入 scope 再注入，以便依赖它的 bean 拿到同一个实例
+     */
+    private Object create(BeanDefinition definition, RequestScope scope) {
+        Object bean;
+        try {
+            bean = definition.newInstance();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("bean 创建失败: " + definition.beanClass.getName(), e.getCause());
+        }
+        if (definition.scope == BeanScope.REQUEST) {
+            scope.put(definition.requestSlot, bean);
+        }
+        inject(bean, definition, scope);
+        return bean;
+    }
+
+    /**
+     * 创建一个请求的作用域，在请求处理过程中获取 request bean 时传入
+     */
+    public RequestScope newRequestScope() {
+        return new RequestScope(requestBeanCount);
+    }
+
+    /**
+     * 是否为单例 bean，单例可以在第一次获取后缓存
+     */
+    public boolean isSingleton(String name) {
+        BeanDefinition definition = definitionMapping.get(name);
+        return definition == null || definition.isSingleton();
+    }
+
+    /**
+     * 懒加载创建 bean，创建完成后 getBean 不再加锁
+     */
+    private Object createLazily(BeanDefinition definition) {
+        synchronized (lazyCreationLock) {
+            if (definition.instance != null) {
+                return definition.instance;
+            }
+            if (definition.creating != null) {
+                // 循环依赖：返回尚未注入完成的对象
+                return definition.creating;
+            }
+            long start = System.nanoTime();
+            Object instance;
+            try {
+                instance = definition.newInstance();
+                definition.creating = instance;
+                inject(instance, definition, null);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("bean 创建失败: " + definition.beanClass.getName(), e.getCause());
+            } finally {
+                definition.creating = null;
+            }
+            definition.instance = instance;
+            register(definition);
+            initTimings.put(definition.beanClass.getName(), System.nanoTime() - start);
+            return instance;
+        }
+    }
+
+    /**
+     * 获取所有 bean 的类型，不会触发懒加载
+     */
+    public Map<String, Class<?>> getBeanTypes() {
+        Map<String, Class<?>> types = new LinkedHashMap<>();
+        for (Map.Entry<String, BeanDefinition> entry: definitionMapping.entrySet()) {
+            types.put(entry.getKey(), entry.getValue().beanClass);
+        }
+        return types;
+    }
+
+    /**
+     * 获取所有单例对象，懒加载模式下只包含已经创建的对象
      */
     public Map<String,Object> getAll(){
         return instanceMapping;
     }
 
 
+    /**
+     * 获取每个 bean 的初始化耗时（纳秒）
+     */
+    public Map<String, Long> getInitTimings() {
+        return Collections.unmodifiableMap(initTimings);
+    }
+
     /**
      * 获取配置类对象
      */
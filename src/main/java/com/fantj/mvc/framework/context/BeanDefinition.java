@@ -0,0 +1,113 @@
+package com.fantj.mvc.framework.context;
+
+import com.fantj.mvc.framework.annotation.BeanScope;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+* bean 定义 -- 一个类对应一个定义，单例 bean 的所有别名（bean名、接口名）共享同一个实例
+* 构造器和注入字段在解析定义时绑定为方法句柄，非单例 bean 每次创建不再走反射
+* @author JiaoFanTing
+**/
+class BeanDefinition {
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * bean 的类
+     */
+    final Class<?> beanClass;
+    /**
+     * 在 IOC 容器中注册的名字
+     */
+    final List<String> names;
+    /**
+     * 需要注入的字段
+     */
+    final List<Injection> injections;
+    /**
+     * 作用域
+     */
+    final BeanScope scope;
+    /**
+     * request 作用域的 bean 在 {@link RequestScope} 中的下标，其他作用域为 -1
+     */
+    int requestSlot = -1;
+    /**
+     * 缓存的无参构造器：()Object
+     */
+    private final MethodHandle constructor;
+    /**
+     * 单例对象
+     */
+    volatile Object instance;
+    /**
+     * 懒加载时正在注入、尚未发布的对象，用于处理循环依赖；只在创建锁内访问
+     */
+    Object creating;
+
+    BeanDefinition(Class<?> beanClass, List<String> names, List<Injection> injections, BeanScope scope)
+            throws NoSuchMethodException, IllegalAccessException {
+        this.beanClass = beanClass;
+        this.names = names;
+        this.injections = injections;
+        this.scope = scope;
+        Constructor<?> constructor = beanClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        this.constructor = MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+    }
+
+    boolean isSingleton() {
+        return scope == BeanScope.SINGLETON;
+    }
+
+    /**
+     * 创建一个新对象（不做注入），构造器抛出的异常与反射一样包装为 InvocationTargetException
+     */
+    Object newInstance() throws InvocationTargetException {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * 注入点：@Autowired 字段及其要注入的 bean 名
+     */
+    static class Injection {
+        final Field field;
+        final String beanId;
+        /**
+         * 字段的 setter：(Object bean, Object value)void
+         */
+        private final MethodHandle setter;
+
+        Injection(Field field, String beanId) throws IllegalAccessException {
+            this.field = field;
+            this.field.setAccessible(true);
+            this.beanId = beanId;
+            this.setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        }
+
+        /**
+         * 给 bean 的字段赋值
+         */
+        void set(Object bean, Object value) {
+            try {
+                setter.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
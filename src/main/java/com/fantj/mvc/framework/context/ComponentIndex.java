@@ -0,0 +1,138 @@
+package com.fantj.mvc.framework.context;
+
+import com.fantj.mvc.framework.annotation.processor.ComponentIndexProcessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* 组件索引 -- 读取编译期由 {@link ComponentIndexProcessor} 生成的索引文件
+* @author JiaoFanTing
+**/
+class ComponentIndex {
+
+    /**
+     * 组件类名
+     */
+    private final Set<String> classNames = new LinkedHashSet<>();
+    /**
+     * 类名 -> 需要注入的字段
+     */
+    private final Map<String, List<InjectionPoint>> injectionPoints = new HashMap<>();
+
+    private ComponentIndex() {
+    }
+
+    /**
+     * 从 classpath 中读取所有索引文件，没有索引时返回 null
+     */
+    static ComponentIndex load(ClassLoader classLoader) throws IOException {
+        Enumeration<URL> urls = classLoader.getResources(ComponentIndexProcessor.INDEX_LOCATION);
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+        ComponentIndex index = new ComponentIndex();
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!index.add(line.split(ComponentIndexProcessor.SEPARATOR, -1))) {
+                        System.err.println("组件索引行格式不对，已忽略: " + url + ": " + line);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 解析一行索引，列数不够（文件被截断或格式较旧）时返回 false；不认识的类型忽略
+     */
+    private boolean add(String[] parts) {
+        if (parts.length == 1 && parts[0].isEmpty()) {
+            return true;
+        }
+        if (parts.length < 2) {
+            return false;
+        }
+        switch (parts[0]) {
+            case ComponentIndexProcessor.CONTROLLER:
+            case ComponentIndexProcessor.SERVICE:
+                classNames.add(parts[1]);
+                return true;
+            case ComponentIndexProcessor.FIELD:
+                if (parts.length < 5) {
+                    return false;
+                }
+                injectionPoints.computeIfAbsent(parts[1], k -> new ArrayList<>())
+                        .add(new InjectionPoint(parts[2], parts[3], parts[4]));
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 获取 packageName 下的组件类名
+     */
+    List<String> getClassNames(String packageName) {
+        String prefix = packageName + ".";
+        List<String> result = new ArrayList<>();
+        for (String className : classNames) {
+            if (className.startsWith(prefix)) {
+                result.add(className);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取类上需要注入的字段
+     */
+    List<InjectionPoint> getInjectionPoints(String className) {
+        return injectionPoints.getOrDefault(className, Collections.emptyList());
+    }
+
+    /**
+     * 注入点：@Autowired 字段
+     */
+    static class InjectionPoint {
+        /**
+         * 字段名
+         */
+        final String field;
+        /**
+         * 字段类型
+         */
+        final String type;
+        /**
+         * @Autowired 上指定的 bean 名
+         */
+        final String qualifier;
+
+        InjectionPoint(String field, String type, String qualifier) {
+            this.field = field;
+            this.type = type;
+            this.qualifier = qualifier;
+        }
+
+        /**
+         * 要注入的 bean id：未指定名称时按类型注入
+         */
+        String beanId() {
+            return qualifier.isEmpty() ? type : qualifier;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.fantj.mvc.framework.context;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+* 并行初始化 bean -- 每个 bean 的创建互不依赖，全部并行执行；
+* 每个 bean 的注入只需等待它自己和它依赖的 bean 创建完成；
+* 与顺序初始化一样，创建失败的 bean 只报告一次，依赖它的 bean 照常注入其余字段
+* @author JiaoFanTing
+**/
+class ParallelBeanInitializer {
+
+    private final List<BeanDefinition> definitions;
+    private final int parallelism;
+    private final Map<String, Long> initTimings;
+
+    ParallelBeanInitializer(List<BeanDefinition> definitions, int parallelism, Map<String, Long> initTimings) {
+        this.definitions = definitions;
+        this.parallelism = parallelism;
+        this.initTimings = initTimings;
+    }
+
+    void run() {
+        // bean 名 -> bean 定义
+        Map<String, BeanDefinition> byName = new HashMap<>();
+        for (BeanDefinition definition : definitions) {
+            for (String name : definition.names) {
+                byName.put(name, definition);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // 1. 所有 bean 并行创建
+            Map<BeanDefinition, CompletableFuture<Void>> created = new HashMap<>();
+            for (BeanDefinition definition : definitions) {
+                created.put(definition, CompletableFuture.runAsync(() -> create(definition), pool));
+            }
+            // 2. 依赖图：注入任务依赖自身及被注入 bean 的创建任务，创建失败也继续注入
+            List<CompletableFuture<Void>> populated = new ArrayList<>();
+            for (BeanDefinition definition : definitions) {
+                List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+                dependencies.add(created.get(definition));
+                for (BeanDefinition.Injection injection : definition.injections) {
+                    BeanDefinition dependency = byName.get(injection.beanId);
+                    if (dependency != null) {
+                        dependencies.add(created.get(dependency));
+                    }
+                }
+                populated.add(CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]))
+                        .handle((ignored, error) -> null)
+                        .thenRunAsync(() -> inject(definition, byName), pool));
+            }
+            // 3. 每个失败只报告一次：创建失败按 bean 报告，注入任务只报告注入本身的失败
+            report(created.values());
+            report(populated);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void report(Iterable<CompletableFuture<Void>> futures) {
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+
+    private void create(BeanDefinition definition) {
+        long start = System.nanoTime();
+        try {
+            definition.instance = definition.newInstance();
+        } catch (InvocationTargetException e) {
+            throw new CompletionException(e.getCause());
+        }
+        initTimings.merge(definition.beanClass.getName(), System.nanoTime() - start, Long::sum);
+    }
+
+    private void inject(BeanDefinition definition, Map<String, BeanDefinition> byName) {
+        // 自身创建失败时没有实例可注入
+        if (definition.instance == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (BeanDefinition.Injection injection : definition.injections) {
+            // 只并行处理单例，非单例依赖由调用方在之后注入
+            BeanDefinition dependency = byName.get(injection.beanId);
+            if (dependency != null) {
+                injection.set(definition.instance, dependency.instance);
+            }
+        }
+        initTimings.merge(definition.beanClass.getName(), System.nanoTime() - start, Long::sum);
+    }
+}
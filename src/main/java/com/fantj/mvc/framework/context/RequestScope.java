@@ -0,0 +1,23 @@
+package com.fantj.mvc.framework.context;
+
+/**
+* request 作用域 -- 一个请求内创建的 request bean，按定义的下标存放
+* 由处理请求的线程使用，不做同步
+* @author JiaoFanTing
+**/
+public final class RequestScope {
+
+    private final Object[] beans;
+
+    RequestScope(int size) {
+        this.beans = new Object[size];
+    }
+
+    Object get(int slot) {
+        return beans[slot];
+    }
+
+    void put(int slot, Object bean) {
+        beans[slot] = bean;
+    }
+}
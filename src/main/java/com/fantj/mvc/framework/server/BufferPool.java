@@ -0,0 +1,50 @@
+package com.fantj.mvc.framework.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* 直接内存缓冲区池 -- 响应按固定大小的块写入直接内存，发送时不再经过 JDK 内部的临时缓冲区复制
+* 直接内存的分配与回收都很慢，块用完后放回池中；池满时交给 GC 回收
+* @author JiaoFanTing
+**/
+final class BufferPool {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxPooled;
+
+    BufferPool(int maxPooled) {
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * 取一个清空的块
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        size.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * 归还块，不是从池中取出的缓冲区直接忽略
+     */
+    void release(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != CHUNK_SIZE) {
+            return;
+        }
+        if (size.incrementAndGet() > maxPooled) {
+            size.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        free.offer(buffer);
+    }
+}
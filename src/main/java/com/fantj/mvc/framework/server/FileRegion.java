@@ -0,0 +1,88 @@
+package com.fantj.mvc.framework.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+* 作为响应体发送的文件区间 -- 用 FileChannel.transferTo 从页缓存直接写入 socket，不经过用户态缓冲区
+* servlet 按 Tomcat 的 sendfile 约定通过请求属性给出文件名与区间，服务器在请求上声明支持
+* @author JiaoFanTing
+**/
+final class FileRegion implements Closeable {
+
+    /**
+     * 服务器设置为 Boolean.TRUE，表示支持 sendfile
+     */
+    static final String SUPPORT = "org.apache.tomcat.sendfile.support";
+    /**
+     * servlet 设置的文件绝对路径
+     */
+    static final String FILENAME = "org.apache.tomcat.sendfile.filename";
+    /**
+     * 起始偏移（Long，包含）与结束偏移（Long，不包含）
+     */
+    static final String START = "org.apache.tomcat.sendfile.start";
+    static final String END = "org.apache.tomcat.sendfile.end";
+
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    private FileRegion(FileChannel channel, long position, long end) {
+        this.channel = channel;
+        this.position = position;
+        this.end = end;
+    }
+
+    /**
+     * 按请求属性打开文件区间，servlet 没有要求 sendfile 时返回 null
+     */
+    static FileRegion of(ServerRequest request) throws IOException {
+        Object filename = request.getAttribute(FILENAME);
+        if (!(filename instanceof String)) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(Paths.get((String) filename), StandardOpenOption.READ);
+        Object start = request.getAttribute(START);
+        Object end = request.getAttribute(END);
+        long from = start instanceof Long ? (Long) start : 0;
+        long to = end instanceof Long ? (Long) end : channel.size();
+        return new FileRegion(channel, from, Math.max(from, to));
+    }
+
+    long remaining() {
+        return end - position;
+    }
+
+    /**
+     * 尽量多地写入 target，写完返回 true；非阻塞 socket 写满时返回 false，等可写后再调用
+     */
+    boolean transferTo(WritableByteChannel target) throws IOException {
+        while (position < end) {
+            long n = channel.transferTo(position, end - position, target);
+            if (n <= 0) {
+                // 文件在发送途中被截短时 transferTo 也返回 0，不能一直等可写
+                if (position >= channel.size()) {
+                    throw new EOFException("文件被截短");
+                }
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.fantj.mvc.framework.server;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+* 一个 HTTP 连接 -- IO 线程负责读取与解析，业务线程执行 servlet 并直接写出响应
+* 流水线请求解析后排队，同一连接同一时刻只处理一个请求，保证响应顺序与请求顺序一致；
+* 排队的请求达到上限时暂停读取，由 TCP 的流量控制让客户端等待
+* 业务线程一次写不完的响应交给 IO 线程在可写时继续写；文件响应体在响应头之后用 transferTo 发送
+* @author JiaoFanTing
+**/
+final class HttpConnection {
+
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes();
+
+    private final HttpServer server;
+    private final IoLoop loop;
+    private final SocketChannel channel;
+    private final HttpParser parser;
+    private final InetSocketAddress remoteAddress;
+    private final InetSocketAddress localAddress;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private SelectionKey key;
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * 以下状态在 this 上同步
+     */
+    private final ArrayDeque<ServerRequest> requests = new ArrayDeque<>();
+    /**
+     * 有请求正在处理或响应正在发送
+     */
+    private boolean busy;
+    private boolean readPaused;
+    private boolean inputClosed;
+    /**
+     * IO 线程上待写完的响应
+     */
+    private ByteBuffer[] writing;
+    /**
+     * IO 线程上待发送完的文件响应体
+     */
+    private FileRegion sending;
+    private boolean closeAfterWrite;
+
+    HttpConnection(HttpServer server, IoLoop loop, SocketChannel channel) throws IOException {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.parser = new HttpParser(this, server.getMaxHeaderSize(), server.getMaxBodySize());
+        this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    HttpServer getServer() {
+        return server;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * IO 线程：读取并解析
+     */
+    void onReadable() {
+        ByteBuffer target = parser.writable();
+        int n;
+        try {
+            n = channel.read(target);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (n < 0) {
+            onInputClosed();
+            return;
+        }
+        parser.filled(target);
+        lastActivity = System.currentTimeMillis();
+        drainParser();
+    }
+
+    /**
+     * IO 线程：把解析出的请求放入队列，队列满时暂停读取
+     */
+    private void drainParser() {
+        while (true) {
+            synchronized (this) {
+                if (requests.size() >= server.getMaxPipeline()) {
+                    readPaused = true;
+                    interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    return;
+                }
+            }
+            ServerRequest request = parser.next();
+            if (request == null) {
+                break;
+            }
+            if (request.getRejectStatus() != 0) {
+                // 无法继续解析，响应错误后关闭
+                synchronized (this) {
+                    inputClosed = true;
+                }
+                interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                enqueue(request);
+                return;
+            }
+            enqueue(request);
+        }
+        if (parser.takeContinue()) {
+            sendContinue();
+        }
+    }
+
+    private void enqueue(ServerRequest request) {
+        synchronized (this) {
+            if (busy) {
+                requests.add(request);
+                return;
+            }
+            busy = true;
+        }
+        dispatch(request);
+    }
+
+    /**
+     * 客户端在等待 100 Continue 才发送请求体，连接空闲时回复
+     */
+    private void sendContinue() {
+        synchronized (this) {
+            if (busy) {
+                return;
+            }
+        }
+        try {
+            channel.write(ByteBuffer.wrap(CONTINUE));
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void onInputClosed() {
+        interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        boolean idle;
+        synchronized (this) {
+            inputClosed = true;
+            idle = !busy;
+        }
+        if (idle) {
+            close();
+        }
+    }
+
+    private void dispatch(ServerRequest request) {
+        try {
+            server.execute(() -> serve(request));
+        } catch (RejectedExecutionException e) {
+            close();
+        }
+    }
+
+    /**
+     * 业务线程：调用 servlet，异步请求在异步上下文完成时再发送响应
+     */
+    private void serve(ServerRequest request) {
+        ServerResponse response = new ServerResponse(request, server.getBufferPool());
+        request.setResponse(response);
+        if (request.getRejectStatus() != 0) {
+            response.sendError(request.getRejectStatus());
+            finish(request);
+            return;
+        }
+        invoke(request);
+        ServerAsyncContext asyncContext = request.asyncContext();
+        if (asyncContext != null) {
+            asyncContext.dispatchReturned();
+        } else {
+            finish(request);
+        }
+    }
+
+    /**
+     * 调用 servlet，出错且没有开始异步处理时改写为 500
+     */
+    private void invoke(ServerRequest request) {
+        ServerResponse response = request.getServerResponse();
+        try {
+            server.getServlet().service(request, response);
+        } catch (Exception | Error e) {
+            server.logError("请求处理失败: " + request, e);
+            if (request.asyncContext() == null && !response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+    /**
+     * 异步上下文 dispatch：在业务线程上以新的路径再调用一次 servlet
+     */
+    void redispatch(ServerRequest request, ServerAsyncContext previous, String target) {
+        try {
+            server.execute(() -> {
+                request.asyncDispatch(target);
+                invoke(request);
+                previous.redispatchReturned(request.asyncContext());
+            });
+        } catch (RejectedExecutionException e) {
+            close();
+        }
+    }
+
+    /**
+     * 业务线程或异步线程：请求处理结束，提交并发送响应
+     */
+    void finish(ServerRequest request) {
+        ServerResponse response = request.getServerResponse();
+        boolean keepAlive = request.isKeepAlive() && request.getRejectStatus() == 0
+                && !response.isCloseRequested() && server.isRunning();
+        ByteBuffer[] buffers = response.commit(keepAlive);
+        FileRegion file = response.file();
+        if (closed.get()) {
+            release(buffers);
+            closeFile(file);
+            return;
+        }
+        boolean done;
+        try {
+            done = write(buffers, file);
+        } catch (IOException e) {
+            release(buffers);
+            closeFile(file);
+            close();
+            return;
+        }
+        if (done) {
+            release(buffers);
+            closeFile(file);
+            responseDone(!keepAlive);
+            return;
+        }
+        synchronized (this) {
+            writing = buffers;
+            sending = file;
+            closeAfterWrite = !keepAlive;
+        }
+        // 在登记之前连接已被关闭时，close 看不到这个文件
+        if (closed.get()) {
+            takeFile();
+            return;
+        }
+        loop.execute(() -> interestOps(key.interestOps() | SelectionKey.OP_WRITE));
+    }
+
+    /**
+     * 先写缓冲区再发送文件，全部写完返回 true
+     */
+    private boolean write(ByteBuffer[] buffers, FileRegion file) throws IOException {
+        if (buffers[buffers.length - 1].hasRemaining()) {
+            channel.write(buffers);
+            if (buffers[buffers.length - 1].hasRemaining()) {
+                return false;
+            }
+        }
+        return file == null || file.transferTo(channel);
+    }
+
+    /**
+     * IO 线程：继续写业务线程没有写完的响应
+     */
+    void onWritable() {
+        ByteBuffer[] buffers;
+        FileRegion file;
+        boolean closeAfter;
+        synchronized (this) {
+            buffers = writing;
+            file = sending;
+            closeAfter = closeAfterWrite;
+        }
+        if (buffers == null) {
+            interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            return;
+        }
+        try {
+            if (!write(buffers, file)) {
+                return;
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        synchronized (this) {
+            writing = null;
+            sending = null;
+        }
+        interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        release(buffers);
+        closeFile(file);
+        responseDone(closeAfter);
+    }
+
+    /**
+     * 响应已写完：处理下一个排队的请求，必要时恢复读取
+     */
+    private void responseDone(boolean close) {
+        lastActivity = System.currentTimeMillis();
+        if (close) {
+            close();
+            return;
+        }
+        ServerRequest next;
+        boolean resume = false;
+        boolean shutdown = false;
+        synchronized (this) {
+            next = requests.poll();
+            if (next == null) {
+                busy = false;
+                shutdown = inputClosed;
+            }
+            if (readPaused && !inputClosed && requests.size() < server.getMaxPipeline()) {
+                readPaused = false;
+                resume = true;
+            }
+        }
+        if (shutdown) {
+            close();
+            return;
+        }
+        if (resume) {
+            loop.execute(this::resumeRead);
+        }
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    /**
+     * IO 线程：先解析已读入的数据，再恢复读取
+     */
+    private void resumeRead() {
+        if (closed.get()) {
+            return;
+        }
+        drainParser();
+        boolean paused;
+        synchronized (this) {
+            paused = readPaused || inputClosed;
+        }
+        if (!paused) {
+            interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * IO 线程：空闲超过 timeout 毫秒且没有处理中的请求
+     */
+    boolean isIdle(long now, long timeout) {
+        if (now - lastActivity < timeout) {
+            return false;
+        }
+        synchronized (this) {
+            return !busy;
+        }
+    }
+
+    private void interestOps(int ops) {
+        if (key != null && key.isValid()) {
+            key.interestOps(ops);
+        }
+    }
+
+    private void release(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            server.getBufferPool().release(buffer);
+        }
+    }
+
+    private static void closeFile(FileRegion file) {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * 取走待发送的文件并关闭
+     */
+    private void takeFile() {
+        FileRegion file;
+        synchronized (this) {
+            file = sending;
+            sending = null;
+        }
+        closeFile(file);
+    }
+
+    /**
+     * 关闭连接，发送中的缓冲区交给 GC 回收，不放回池中以免与仍在写的线程冲突；发送中的文件要关闭
+     */
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+        takeFile();
+    }
+}
@@ -0,0 +1,366 @@
+package com.fantj.mvc.framework.server;
+
+import javax.servlet.http.HttpServletResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+/**
+* HTTP/1.1 请求解析 -- 每个连接一个，在 IO 线程上增量解析读缓冲区中的数据
+* 一次读入的多个流水线请求依次解析出来；请求体按 Content-Length 读入单独的数组，读缓冲区只需容纳请求头
+* 不支持 chunked 请求体，返回 411
+* @author JiaoFanTing
+**/
+final class HttpParser {
+
+    /**
+     * 每次读取至少留出的空间
+     */
+    private static final int MIN_READ = 2048;
+    private static final int INITIAL_CAPACITY = 8192;
+    /**
+     * servlet 3.1 中没有这个常量
+     */
+    private static final int SC_REQUEST_HEADER_FIELDS_TOO_LARGE = 431;
+
+    private final HttpConnection connection;
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private ByteBuffer readBuffer = ByteBuffer.wrap(buffer);
+    /**
+     * 未解析数据的起止位置
+     */
+    private int start;
+    private int end;
+    /**
+     * 已扫描过、不含请求头结束标记的位置，下次从这里继续找
+     */
+    private int scanned;
+    /**
+     * 请求头已解析、正在读请求体的请求
+     */
+    private ServerRequest pending;
+    private byte[] body;
+    private int bodyFilled;
+    private boolean continueNeeded;
+    private boolean failed;
+    private int rejectStatus;
+
+    HttpParser(HttpConnection connection, int maxHeaderSize, int maxBodySize) {
+        this.connection = connection;
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * 供 channel.read 写入的缓冲区，读完后调用 {@link #filled(ByteBuffer)}
+     */
+    ByteBuffer writable() {
+        if (start == end) {
+            start = end = scanned = 0;
+        }
+        if (buffer.length - end < MIN_READ) {
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                scanned = Math.max(0, scanned - start);
+                start = 0;
+            }
+            if (buffer.length - end < MIN_READ) {
+                byte[] grown = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, grown, 0, end);
+                buffer = grown;
+                readBuffer = ByteBuffer.wrap(buffer);
+            }
+        }
+        readBuffer.limit(buffer.length).position(end);
+        return readBuffer;
+    }
+
+    void filled(ByteBuffer readBuffer) {
+        end = readBuffer.position();
+    }
+
+    /**
+     * 是否有读了一部分的请求
+     */
+    boolean hasPartialRequest() {
+        return pending != null || start < end;
+    }
+
+    /**
+     * 请求头要求 100-continue 且请求体还没开始发送时返回 true，只返回一次
+     */
+    boolean takeContinue() {
+        boolean needed = continueNeeded;
+        continueNeeded = false;
+        return needed;
+    }
+
+    /**
+     * 解析下一个完整的请求，数据不足时返回 null
+     * 无法解析时返回 {@link ServerRequest#rejected}，之后不再解析
+     */
+    ServerRequest next() {
+        if (failed) {
+            return null;
+        }
+        if (pending == null) {
+            pending = parseHead();
+            if (failed) {
+                pending = null;
+                return ServerRequest.rejected(connection, rejectStatus);
+            }
+            if (pending == null) {
+                return null;
+            }
+        }
+        if (body != null) {
+            int n = Math.min(end - start, body.length - bodyFilled);
+            System.arraycopy(buffer, start, body, bodyFilled, n);
+            start += n;
+            bodyFilled += n;
+            if (bodyFilled < body.length) {
+                return null;
+            }
+            pending.setBody(body);
+            body = null;
+        }
+        continueNeeded = false;
+        ServerRequest request = pending;
+        pending = null;
+        return request;
+    }
+
+    /**
+     * 解析请求行与请求头
+     */
+    private ServerRequest parseHead() {
+        // 请求之间多余的空行
+        while (start < end && (buffer[start] == '\r' || buffer[start] == '\n')) {
+            start++;
+        }
+        int headEnd = findHeadEnd();
+        if (headEnd < 0) {
+            if (end - start > maxHeaderSize) {
+                return reject(SC_REQUEST_HEADER_FIELDS_TOO_LARGE);
+            }
+            return null;
+        }
+        if (headEnd - start > maxHeaderSize) {
+            return reject(SC_REQUEST_HEADER_FIELDS_TOO_LARGE);
+        }
+        int lineEnd = lineEnd(start, headEnd);
+        ServerRequest request = parseRequestLine(start, lineEnd);
+        if (request == null) {
+            return null;
+        }
+        int position = lineEnd + 2;
+        while (position < headEnd) {
+            lineEnd = lineEnd(position, headEnd);
+            if (!parseHeader(request, position, lineEnd)) {
+                return reject(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            position = lineEnd + 2;
+        }
+        start = headEnd + 4;
+        scanned = start;
+        return prepareBody(request);
+    }
+
+    /**
+     * 标记解析失败，由 {@link #next()} 返回对应状态码的请求
+     */
+    private ServerRequest reject(int status) {
+        failed = true;
+        rejectStatus = status;
+        return null;
+    }
+
+    /**
+     * 查找 CRLFCRLF，返回其起始位置
+     */
+    private int findHeadEnd() {
+        for (int i = Math.max(start, scanned - 3); i + 3 < end; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n' && buffer[i + 2] == '\r' && buffer[i + 3] == '\n') {
+                return i;
+            }
+        }
+        scanned = end;
+        return -1;
+    }
+
+    private int lineEnd(int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private ServerRequest parseRequestLine(int from, int to) {
+        int methodEnd = indexOf(' ', from, to);
+        int targetEnd = methodEnd < 0 ? -1 : indexOf(' ', methodEnd + 1, to);
+        if (methodEnd <= from || targetEnd <= methodEnd + 1) {
+            return reject(HttpServletResponse.SC_BAD_REQUEST);
+        }
+        String method = method(from, methodEnd);
+        String target = text(methodEnd + 1, targetEnd);
+        String protocol = protocol(targetEnd + 1, to);
+        if (method == null || protocol == null) {
+            return null;
+        }
+        if (target.startsWith("http://") || target.startsWith("https://")) {
+            // absolute-form，只保留路径部分
+            int path = target.indexOf('/', target.indexOf("//") + 2);
+            target = path < 0 ? "/" : target.substring(path);
+        } else if (target.charAt(0) != '/' && !"*".equals(target)) {
+            return reject(HttpServletResponse.SC_BAD_REQUEST);
+        }
+        return new ServerRequest(connection, method, target, protocol);
+    }
+
+    /**
+     * 常见的方法名不再创建字符串
+     */
+    private String method(int from, int to) {
+        int length = to - from;
+        if (length == 3 && buffer[from] == 'G' && buffer[from + 1] == 'E' && buffer[from + 2] == 'T') {
+            return "GET";
+        }
+        if (length == 4 && buffer[from] == 'P' && buffer[from + 1] == 'O' && buffer[from + 2] == 'S' && buffer[from + 3] == 'T') {
+            return "POST";
+        }
+        if (length == 4 && buffer[from] == 'H' && buffer[from + 1] == 'E' && buffer[from + 2] == 'A' && buffer[from + 3] == 'D') {
+            return "HEAD";
+        }
+        for (int i = from; i < to; i++) {
+            if (!isTokenChar(buffer[i])) {
+                reject(HttpServletResponse.SC_BAD_REQUEST);
+                return null;
+            }
+        }
+        return text(from, to);
+    }
+
+    private String protocol(int from, int to) {
+        int length = to - from;
+        if (length == 8 && buffer[from] == 'H' && buffer[from + 1] == 'T' && buffer[from + 2] == 'T' && buffer[from + 3] == 'P'
+                && buffer[from + 4] == '/' && buffer[from + 5] == '1' && buffer[from + 6] == '.') {
+            if (buffer[from + 7] == '1') {
+                return "HTTP/1.1";
+            }
+            if (buffer[from + 7] == '0') {
+                return "HTTP/1.0";
+            }
+        }
+        if (length > 5 && buffer[from] == 'H' && buffer[from + 4] == '/') {
+            reject(HttpServletResponse.SC_HTTP_VERSION_NOT_SUPPORTED);
+        } else {
+            reject(HttpServletResponse.SC_BAD_REQUEST);
+        }
+        return null;
+    }
+
+    private boolean parseHeader(ServerRequest request, int from, int to) {
+        int colon = indexOf(':', from, to);
+        if (colon <= from) {
+            return false;
+        }
+        for (int i = from; i < colon; i++) {
+            if (!isTokenChar(buffer[i])) {
+                // 包括以空白开头的折叠行
+                return false;
+            }
+        }
+        int valueStart = colon + 1;
+        int valueEnd = to;
+        while (valueStart < valueEnd && (buffer[valueStart] == ' ' || buffer[valueStart] == '\t')) {
+            valueStart++;
+        }
+        while (valueEnd > valueStart && (buffer[valueEnd - 1] == ' ' || buffer[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+        request.addHeader(text(from, colon), text(valueStart, valueEnd));
+        return true;
+    }
+
+    /**
+     * 根据请求头确定连接是否保持与请求体长度
+     */
+    private ServerRequest prepareBody(ServerRequest request) {
+        String connectionHeader = request.getHeader("Connection");
+        if ("HTTP/1.1".equals(request.getProtocol())) {
+            request.setKeepAlive(!hasToken(connectionHeader, "close"));
+        } else {
+            request.setKeepAlive(hasToken(connectionHeader, "keep-alive"));
+        }
+        if (request.getHeader("Transfer-Encoding") != null) {
+            return reject(HttpServletResponse.SC_LENGTH_REQUIRED);
+        }
+        long length = 0;
+        Enumeration<String> lengths = request.getHeaders("Content-Length");
+        while (lengths.hasMoreElements()) {
+            long value;
+            try {
+                value = Long.parseLong(lengths.nextElement().trim());
+            } catch (NumberFormatException e) {
+                return reject(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            if (value < 0 || length != 0 && value != length) {
+                return reject(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            length = value;
+        }
+        if (length > maxBodySize) {
+            return reject(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        }
+        if (length > 0) {
+            body = new byte[(int) length];
+            bodyFilled = 0;
+            continueNeeded = start == end && "100-continue".equalsIgnoreCase(request.getHeader("Expect"));
+        }
+        return request;
+    }
+
+    private static boolean hasToken(String header, String token) {
+        if (header == null) {
+            return false;
+        }
+        for (String part : header.split(",")) {
+            if (token.equalsIgnoreCase(part.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String text(int from, int to) {
+        return new String(buffer, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isTokenChar(byte b) {
+        if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9') {
+            return true;
+        }
+        switch (b) {
+            case '!': case '#': case '$': case '%': case '&': case '\'': case '*': case '+':
+            case '-': case '.': case '^': case '_': case '`': case '|': case '~':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
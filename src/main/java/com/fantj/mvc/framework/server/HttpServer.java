@@ -0,0 +1,246 @@
+package com.fantj.mvc.framework.server;
+
+import com.fantj.mvc.framework.servlet.ErrorLog;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServlet;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* 内置 HTTP/1.1 服务器 -- 不依赖 servlet 容器运行一个 HttpServlet
+* 若干 IO 线程以非阻塞方式读取、解析请求，servlet 在业务线程池中执行；支持 keep-alive 与流水线请求，
+* 响应体写入池化的直接内存，由 gathering write 与响应头一起发送
+* @author JiaoFanTing
+**/
+public final class HttpServer implements Closeable {
+
+    /**
+     * 清理过期会话的间隔
+     */
+    private static final long SESSION_PURGE_SECONDS = 60;
+
+    private final HttpServlet servlet;
+    private final ServerContext context;
+    private final String host;
+    private final int port;
+    private final int backlog;
+    private final int ioThreads;
+    private final int workerThreads;
+    private final int maxPipeline;
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+    private final long idleTimeout;
+    private final BufferPool bufferPool;
+    private final ServerSessions sessions;
+    /**
+     * 限流的错误日志：优先用 servlet 放在 ServletContext 中的实例，没有时自己创建
+     */
+    private final ErrorLog errorLog;
+    private final boolean ownsErrorLog;
+
+    private ServerSocketChannel serverChannel;
+    private IoLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private ExecutorService workers;
+    private ScheduledThreadPoolExecutor timer;
+    private volatile boolean running;
+
+    /**
+     * @param servlet 已经 init 的 servlet
+     * @param config  application.properties 中的配置，读取 server 开头的配置项
+     */
+    public HttpServer(HttpServlet servlet, ServerContext context, Properties config) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.servlet = servlet;
+        this.context = context;
+        this.host = config.getProperty("serverHost");
+        this.port = Integer.parseInt(config.getProperty("serverPort", "8080"));
+        this.backlog = Integer.parseInt(config.getProperty("serverBacklog", "1024"));
+        this.ioThreads = Integer.parseInt(config.getProperty("serverIoThreads", String.valueOf(Math.min(4, processors))));
+        this.workerThreads = Integer.parseInt(config.getProperty("serverWorkerThreads", String.valueOf(Math.max(16, processors * 4))));
+        this.maxPipeline = Integer.parseInt(config.getProperty("serverMaxPipeline", "16"));
+        this.maxHeaderSize = Integer.parseInt(config.getProperty("serverMaxHeaderSize", "16384"));
+        this.maxBodySize = Integer.parseInt(config.getProperty("serverMaxBodySize", "1048576"));
+        this.idleTimeout = Long.parseLong(config.getProperty("serverIdleTimeout", "60000"));
+        this.bufferPool = new BufferPool(Integer.parseInt(config.getProperty("serverBufferPoolSize", "1024")));
+        this.sessions = new ServerSessions(context.getServletContext(),
+                Integer.parseInt(config.getProperty("serverSessionTimeout", "1800")));
+        Object shared = context.getServletContext().getAttribute(ErrorLog.class.getName());
+        this.ownsErrorLog = !(shared instanceof ErrorLog);
+        this.errorLog = ownsErrorLog ? new ErrorLog(Integer.parseInt(config.getProperty("errorLogRate", "10")),
+                Integer.parseInt(config.getProperty("errorLogQueueSize", "256"))) : (ErrorLog) shared;
+    }
+
+    /**
+     * 记录错误，不阻塞调用线程
+     */
+    void logError(String message, Throwable error) {
+        errorLog.log(message, error);
+    }
+
+    /**
+     * 绑定端口并启动 IO 线程与业务线程池
+     */
+    public void start() throws IOException {
+        AtomicInteger workerNumber = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "mvc-http-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "mvc-http-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        timer.scheduleWithFixedDelay(sessions::purge, SESSION_PURGE_SECONDS, SESSION_PURGE_SECONDS, TimeUnit.SECONDS);
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port), backlog);
+        serverChannel.configureBlocking(false);
+
+        loops = new IoLoop[ioThreads];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(this, "mvc-http-io-" + (i + 1));
+        }
+        running = true;
+        for (IoLoop loop : loops) {
+            loop.start();
+        }
+        loops[0].listen(serverChannel);
+    }
+
+    /**
+     * 实际监听的端口，配置为 0 时由系统分配
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    /**
+     * IO 线程：接受新连接，轮流分配给各 IO 线程
+     */
+    void accept(ServerSocketChannel channel) {
+        while (true) {
+            SocketChannel socket;
+            try {
+                socket = channel.accept();
+            } catch (IOException e) {
+                logError("接受连接失败", e);
+                return;
+            }
+            if (socket == null) {
+                return;
+            }
+            try {
+                socket.configureBlocking(false);
+                socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                IoLoop loop = loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+                loop.register(new HttpConnection(this, loop, socket));
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // 忽略
+                }
+            }
+        }
+    }
+
+    void execute(Runnable task) {
+        workers.execute(task);
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    HttpServlet getServlet() {
+        return servlet;
+    }
+
+    ServletContext getServletContext() {
+        return context.getServletContext();
+    }
+
+    ServerSessions getSessions() {
+        return sessions;
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    int getMaxPipeline() {
+        return maxPipeline;
+    }
+
+    int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 停止接受连接，等待处理中的请求结束后关闭连接并销毁 servlet
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logError("关闭监听端口失败", e);
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+            for (IoLoop loop : loops) {
+                loop.shutdown();
+            }
+            for (IoLoop loop : loops) {
+                loop.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        timer.shutdownNow();
+        sessions.clear();
+        servlet.destroy();
+        if (ownsErrorLog) {
+            errorLog.close();
+        }
+    }
+}
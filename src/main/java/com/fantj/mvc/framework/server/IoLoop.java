@@ -0,0 +1,164 @@
+package com.fantj.mvc.framework.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+* IO 线程 -- 一个 Selector 负责一组连接的读取、未写完响应的发送与空闲超时检查
+* 其他线程通过 {@link #execute(Runnable)} 提交任务，修改 SelectionKey 只在本线程进行
+* @author JiaoFanTing
+**/
+final class IoLoop implements Runnable {
+
+    /**
+     * 空闲连接检查间隔（毫秒）
+     */
+    private static final long SWEEP_INTERVAL = 1000;
+
+    private final HttpServer server;
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    IoLoop(HttpServer server, String name) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * 在 IO 线程上执行任务，当前就是 IO 线程时直接执行
+     */
+    void execute(Runnable task) {
+        if (Thread.currentThread() == thread) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void listen(ServerSocketChannel serverChannel) {
+        execute(() -> {
+            try {
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                // 服务器已关闭
+            }
+        });
+    }
+
+    /**
+     * 接管新连接
+     */
+    void register(HttpConnection connection) {
+        execute(() -> {
+            try {
+                connection.setKey(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+            } catch (ClosedChannelException e) {
+                connection.close();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL;
+        while (running) {
+            try {
+                selector.select(SWEEP_INTERVAL);
+            } catch (IOException e) {
+                server.logError("select 失败，IO 线程退出: " + thread.getName(), e);
+                break;
+            }
+            runTasks();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                handle(key);
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextSweep) {
+                sweep(now);
+                nextSweep = now + SWEEP_INTERVAL;
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof HttpConnection) {
+                ((HttpConnection) key.attachment()).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            server.logError("关闭 selector 失败", e);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                server.logError("IO 线程任务失败", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        Object attachment = key.attachment();
+        if (attachment == null) {
+            server.accept((ServerSocketChannel) key.channel());
+            return;
+        }
+        HttpConnection connection = (HttpConnection) attachment;
+        try {
+            if (key.isWritable()) {
+                connection.onWritable();
+            }
+            if (key.isValid() && key.isReadable()) {
+                connection.onReadable();
+            }
+        } catch (RuntimeException e) {
+            server.logError("连接处理失败: " + connection.getRemoteAddress(), e);
+            connection.close();
+        }
+    }
+
+    /**
+     * 关闭空闲超时的连接
+     */
+    private void sweep(long now) {
+        long timeout = server.getIdleTimeout();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof HttpConnection && ((HttpConnection) attachment).isIdle(now, timeout)) {
+                ((HttpConnection) attachment).close();
+            }
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    void join(long millis) throws InterruptedException {
+        thread.join(millis);
+    }
+}
@@ -0,0 +1,274 @@
+package com.fantj.mvc.framework.server;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+* 内置服务器的异步上下文 -- complete 发送响应，dispatch 在业务线程上以 ASYNC 类型再调用一次 servlet
+* 按 servlet 规范，startAsync 所在的 service 调用返回之前调用 complete/dispatch 不会立即生效，返回后才执行
+* @author JiaoFanTing
+**/
+final class ServerAsyncContext implements AsyncContext {
+
+    private static final long DEFAULT_TIMEOUT = 30000;
+
+    private final ServerRequest request;
+    private final ServletRequest suppliedRequest;
+    private final ServletResponse suppliedResponse;
+    private final List<Registration> listeners = new ArrayList<>(1);
+    private long timeout = DEFAULT_TIMEOUT;
+    private ScheduledFuture<?> timeoutTask;
+    /**
+     * 以下状态都在 this 上同步
+     */
+    private boolean dispatching = true;
+    private boolean completeRequested;
+    private boolean completed;
+    /**
+     * 请求 dispatch 的目标路径，请求的是 complete 时为 null
+     */
+    private String dispatchTarget;
+
+    ServerAsyncContext(ServerRequest request, ServletRequest suppliedRequest, ServletResponse suppliedResponse) {
+        this.request = request;
+        this.suppliedRequest = suppliedRequest;
+        this.suppliedResponse = suppliedResponse;
+    }
+
+    @Override
+    public ServletRequest getRequest() {
+        return suppliedRequest;
+    }
+
+    @Override
+    public ServletResponse getResponse() {
+        return suppliedResponse;
+    }
+
+    @Override
+    public boolean hasOriginalRequestAndResponse() {
+        return suppliedRequest == request;
+    }
+
+    /**
+     * 分派到 startAsync 时的请求路径
+     */
+    @Override
+    public void dispatch() {
+        HttpServletRequest target = suppliedRequest instanceof HttpServletRequest ? (HttpServletRequest) suppliedRequest : request;
+        String query = target.getQueryString();
+        dispatch(query == null ? target.getRequestURI() : target.getRequestURI() + "?" + query);
+    }
+
+    @Override
+    public void dispatch(String path) {
+        synchronized (this) {
+            if (completeRequested) {
+                throw new IllegalStateException("complete() or dispatch() has already been called");
+            }
+            completeRequested = true;
+            dispatchTarget = path;
+            if (dispatching) {
+                return;
+            }
+        }
+        doDispatch();
+    }
+
+    /**
+     * 内置服务器只有一个 ServletContext
+     */
+    @Override
+    public void dispatch(ServletContext context, String path) {
+        dispatch(path);
+    }
+
+    @Override
+    public void complete() {
+        synchronized (this) {
+            if (completeRequested) {
+                return;
+            }
+            completeRequested = true;
+            if (dispatching) {
+                return;
+            }
+        }
+        doComplete();
+    }
+
+    /**
+     * 发起异步的 service 调用已返回：之前已请求 complete 的立即完成，否则开始计时
+     */
+    void dispatchReturned() {
+        String target;
+        synchronized (this) {
+            dispatching = false;
+            if (!completeRequested) {
+                if (timeout > 0) {
+                    timeoutTask = request.getConnection().getServer().schedule(this::onTimeout, timeout);
+                }
+                return;
+            }
+            target = dispatchTarget;
+        }
+        if (target != null) {
+            doDispatch();
+        } else {
+            doComplete();
+        }
+    }
+
+    /**
+     * 停止计时，切换请求路径后交给连接重新调用 servlet
+     */
+    private void doDispatch() {
+        String target;
+        synchronized (this) {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+            target = dispatchTarget;
+        }
+        request.getConnection().redispatch(request, this, target);
+    }
+
+    /**
+     * 分派后的 service 调用返回：又开始了异步处理时通知监听器，否则结束请求
+     */
+    void redispatchReturned(ServerAsyncContext next) {
+        if (next == null) {
+            doComplete();
+            return;
+        }
+        for (Registration registration : listeners) {
+            try {
+                registration.listener.onStartAsync(registration.event(next));
+            } catch (IOException | RuntimeException e) {
+                logError("AsyncListener 失败: " + registration.listener.getClass().getName(), e);
+            }
+        }
+        next.dispatchReturned();
+    }
+
+    synchronized boolean isCompleted() {
+        return completed;
+    }
+
+    private void doComplete() {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+        }
+        for (Registration registration : listeners) {
+            try {
+                registration.listener.onComplete(registration.event(this));
+            } catch (IOException | RuntimeException e) {
+                logError("AsyncListener 失败: " + registration.listener.getClass().getName(), e);
+            }
+        }
+        request.getConnection().finish(request);
+    }
+
+    /**
+     * 超时：先通知监听器，监听器没有结束请求时响应 500
+     */
+    private void onTimeout() {
+        synchronized (this) {
+            if (completeRequested) {
+                return;
+            }
+        }
+        for (Registration registration : listeners) {
+            try {
+                registration.listener.onTimeout(registration.event(this));
+            } catch (IOException | RuntimeException e) {
+                logError("AsyncListener 失败: " + registration.listener.getClass().getName(), e);
+            }
+        }
+        synchronized (this) {
+            if (completeRequested) {
+                return;
+            }
+        }
+        if (!suppliedResponse.isCommitted()) {
+            try {
+                ((HttpServletResponse) suppliedResponse).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } catch (IOException e) {
+                logError("异步请求超时后响应失败: " + request, e);
+            }
+        }
+        complete();
+    }
+
+    private void logError(String message, Throwable error) {
+        request.getConnection().getServer().logError(message, error);
+    }
+
+    @Override
+    public void start(Runnable run) {
+        request.getConnection().getServer().execute(run);
+    }
+
+    @Override
+    public void addListener(AsyncListener listener) {
+        addListener(listener, suppliedRequest, suppliedResponse);
+    }
+
+    @Override
+    public void addListener(AsyncListener listener, ServletRequest servletRequest, ServletResponse servletResponse) {
+        listeners.add(new Registration(listener, servletRequest, servletResponse));
+    }
+
+    @Override
+    public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+        try {
+            return clazz.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new ServletException(e);
+        }
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeout;
+    }
+
+    private static final class Registration {
+        final AsyncListener listener;
+        final ServletRequest request;
+        final ServletResponse response;
+
+        Registration(AsyncListener listener, ServletRequest request, ServletResponse response) {
+            this.listener = listener;
+            this.request = request;
+            this.response = response;
+        }
+
+        AsyncEvent event(AsyncContext context) {
+            return new AsyncEvent(context, request, response);
+        }
+    }
+}
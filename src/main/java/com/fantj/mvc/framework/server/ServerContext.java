@@ -0,0 +1,196 @@
+package com.fantj.mvc.framework.server;
+
+import com.fantj.mvc.framework.servlet.ErrorLog;
+import com.fantj.mvc.framework.servlet.MimeTypes;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.SessionTrackingMode;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* 内置服务器的 ServletConfig 与 ServletContext -- 提供 init 参数与属性，资源路径按 classpath 解析，MIME 类型见 {@link MimeTypes}
+* 没有转发与 web.xml 配置，相关方法返回 null；动态注册 servlet、filter 等方法调用时抛出 IllegalStateException
+* @author JiaoFanTing
+**/
+public final class ServerContext implements ServletConfig {
+
+    static final String SERVER_INFO = "easy-mvc";
+
+    private final String servletName;
+    private final Map<String, String> initParameters;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final ClassLoader classLoader;
+    private final ServletContext servletContext;
+
+    public ServerContext(String servletName, Map<String, String> initParameters) {
+        this.servletName = servletName;
+        this.initParameters = initParameters;
+        this.classLoader = ServerContext.class.getClassLoader();
+        this.servletContext = (ServletContext) Proxy.newProxyInstance(ServerContext.class.getClassLoader(),
+                new Class[]{ServletContext.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            if (args[1] == null) {
+                                attributes.remove(args[0]);
+                            } else {
+                                attributes.put((String) args[0], args[1]);
+                            }
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove(args[0]);
+                            return null;
+                        case "getAttributeNames":
+                            return Collections.enumeration(attributes.keySet());
+                        case "getInitParameter":
+                            return initParameters.get(args[0]);
+                        case "getInitParameterNames":
+                            return Collections.enumeration(initParameters.keySet());
+                        case "getContextPath":
+                            return "";
+                        case "getServletContextName":
+                            return servletName;
+                        case "getServerInfo":
+                            return SERVER_INFO;
+                        case "getVirtualServerName":
+                            return SERVER_INFO;
+                        case "getMajorVersion":
+                        case "getEffectiveMajorVersion":
+                            return 3;
+                        case "getMinorVersion":
+                        case "getEffectiveMinorVersion":
+                            return 1;
+                        case "getClassLoader":
+                            return classLoader;
+                        case "getMimeType":
+                            return MimeTypes.of((String) args[0]);
+                        case "getResource":
+                            return resource((String) args[0]);
+                        case "getResourceAsStream":
+                            URL url = resource((String) args[0]);
+                            return url == null ? null : url.openStream();
+                        case "getRealPath":
+                            File file = file((String) args[0]);
+                            return file == null ? null : file.getPath();
+                        case "getResourcePaths":
+                            return resourcePaths((String) args[0]);
+                        case "getContext":
+                        case "getRequestDispatcher":
+                        case "getNamedDispatcher":
+                        case "getServlet":
+                        case "getServletRegistration":
+                        case "getFilterRegistration":
+                        case "getSessionCookieConfig":
+                        case "getJspConfigDescriptor":
+                            // 没有其他 web 应用、转发与 web.xml 配置，按规范返回 null
+                            return null;
+                        case "getServlets":
+                        case "getServletNames":
+                            return Collections.emptyEnumeration();
+                        case "getServletRegistrations":
+                        case "getFilterRegistrations":
+                            return Collections.emptyMap();
+                        case "getDefaultSessionTrackingModes":
+                        case "getEffectiveSessionTrackingModes":
+                            return EnumSet.of(SessionTrackingMode.COOKIE);
+                        case "log":
+                            // servlet 放入了限流的错误日志时交给它，不在调用线程上输出
+                            Object errorLog = attributes.get(ErrorLog.class.getName());
+                            Throwable error = args.length > 1 && args[1] instanceof Throwable ? (Throwable) args[1] : null;
+                            if (errorLog instanceof ErrorLog) {
+                                ((ErrorLog) errorLog).log(String.valueOf(args[0]), error);
+                            } else {
+                                System.out.println(args[0]);
+                                if (error != null) {
+                                    error.printStackTrace();
+                                }
+                            }
+                            return null;
+                        case "toString":
+                            return "ServletContext[" + servletName + "]";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            // addServlet、addFilter、setInitParameter 等：servlet 已经初始化，按规范不能再修改配置
+                            throw new IllegalStateException("内置服务器不支持动态注册与修改配置: " + method.getName());
+                    }
+                });
+    }
+
+    /**
+     * 资源路径以 / 开头，相对 classpath 根目录
+     */
+    private URL resource(String path) throws MalformedURLException {
+        if (path == null || !path.startsWith("/")) {
+            throw new MalformedURLException("资源路径必须以 / 开头: " + path);
+        }
+        return path.length() == 1 ? classLoader.getResource("") : classLoader.getResource(path.substring(1));
+    }
+
+    /**
+     * 资源在文件系统中时返回对应的文件，在 jar 中或不存在时返回 null
+     */
+    private File file(String path) throws MalformedURLException {
+        URL url = resource(path);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 目录下的直接子项，子目录以 / 结尾；只支持文件系统中的目录
+     */
+    private Set<String> resourcePaths(String path) throws MalformedURLException {
+        File directory = file(path);
+        File[] children = directory == null ? null : directory.listFiles();
+        if (children == null) {
+            return null;
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        Set<String> paths = new HashSet<>();
+        for (File child : children) {
+            paths.add(prefix + child.getName() + (child.isDirectory() ? "/" : ""));
+        }
+        return paths;
+    }
+
+    @Override
+    public String getServletName() {
+        return servletName;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public String getInitParameter(String name) {
+        return initParameters.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getInitParameterNames() {
+        return Collections.enumeration(initParameters.keySet());
+    }
+}
@@ -0,0 +1,772 @@
+package com.fantj.mvc.framework.server;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ReadListener;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.Part;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+* 内置服务器的 request -- 由 {@link HttpParser} 解析得到，请求体已完整读入内存
+* Cookie 从请求头解析；会话保存在服务器内存中（见 {@link ServerSessions}），没有认证，相关方法返回 null 或 false
+* @author JiaoFanTing
+**/
+final class ServerRequest extends HttpServletRequestWrapper {
+
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final HttpConnection connection;
+    private final String method;
+    private String requestURI;
+    private String queryString;
+    private final String protocol;
+    /**
+     * 请求头，名称不区分大小写
+     */
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Object> attributes = new HashMap<>();
+    private byte[] body = NO_BODY;
+    private Map<String, String[]> parameters;
+    private String characterEncoding;
+    private boolean keepAlive;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+    private ServerResponse response;
+    private ServerAsyncContext asyncContext;
+    private DispatcherType dispatcherType = DispatcherType.REQUEST;
+    /**
+     * 第一次取 Cookie 时解析，没有 Cookie 请求头时为空数组
+     */
+    private Cookie[] cookies;
+    /**
+     * 本次请求已取得的会话，第一次调用 getSession 时查找或创建
+     */
+    private ServerSession session;
+    /**
+     * 解析失败时要直接返回的状态码，0 表示正常请求
+     */
+    private int rejectStatus;
+
+    ServerRequest(HttpConnection connection, String method, String target, String protocol) {
+        super(unsupported());
+        this.connection = connection;
+        this.method = method;
+        this.protocol = protocol;
+        int query = target.indexOf('?');
+        this.requestURI = query < 0 ? target : target.substring(0, query);
+        this.queryString = query < 0 ? null : target.substring(query + 1);
+        attributes.put(FileRegion.SUPPORT, Boolean.TRUE);
+    }
+
+    /**
+     * 无法解析的请求：不交给 servlet，直接以 status 响应并关闭连接
+     */
+    static ServerRequest rejected(HttpConnection connection, int status) {
+        ServerRequest request = new ServerRequest(connection, "GET", "/", "HTTP/1.1");
+        request.rejectStatus = status;
+        return request;
+    }
+
+    int getRejectStatus() {
+        return rejectStatus;
+    }
+
+    void addHeader(String name, String value) {
+        headers.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+    }
+
+    void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    HttpConnection getConnection() {
+        return connection;
+    }
+
+    void setResponse(ServerResponse response) {
+        this.response = response;
+    }
+
+    ServerResponse getServerResponse() {
+        return response;
+    }
+
+    /**
+     * 已调用过 startAsync 时返回异步上下文，否则为 null
+     */
+    ServerAsyncContext asyncContext() {
+        return asyncContext;
+    }
+
+    /**
+     * AsyncContext.dispatch：记下原始路径，切换到 target（可以带查询字符串），之后可以再次 startAsync
+     */
+    void asyncDispatch(String target) {
+        if (dispatcherType == DispatcherType.REQUEST) {
+            attributes.put(AsyncContext.ASYNC_REQUEST_URI, requestURI);
+            attributes.put(AsyncContext.ASYNC_CONTEXT_PATH, getContextPath());
+            attributes.put(AsyncContext.ASYNC_SERVLET_PATH, getServletPath());
+            if (queryString != null) {
+                attributes.put(AsyncContext.ASYNC_QUERY_STRING, queryString);
+            }
+        }
+        int query = target.indexOf('?');
+        if (query >= 0) {
+            queryString = target.substring(query + 1);
+            parameters = null;
+        }
+        requestURI = query < 0 ? target : target.substring(0, query);
+        dispatcherType = DispatcherType.ASYNC;
+        asyncContext = null;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestURI;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer("http://");
+        String host = getHeader("Host");
+        url.append(host == null ? getLocalName() + ":" + getLocalPort() : host);
+        return url.append(requestURI);
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getServletPath() {
+        return requestURI;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public String getScheme() {
+        return "http";
+    }
+
+    @Override
+    public boolean isSecure() {
+        return false;
+    }
+
+    @Override
+    public String getServerName() {
+        String host = getHeader("Host");
+        if (host == null) {
+            return getLocalName();
+        }
+        int colon = host.lastIndexOf(':');
+        return colon > 0 && host.indexOf(']', colon) < 0 ? host.substring(0, colon) : host;
+    }
+
+    @Override
+    public int getServerPort() {
+        String host = getHeader("Host");
+        int colon = host == null ? -1 : host.lastIndexOf(':');
+        if (colon > 0 && host.indexOf(']', colon) < 0) {
+            try {
+                return Integer.parseInt(host.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                return getLocalPort();
+            }
+        }
+        return host == null ? getLocalPort() : 80;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        InetSocketAddress address = connection.getRemoteAddress();
+        return address == null ? null : address.getAddress().getHostAddress();
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return getRemoteAddr();
+    }
+
+    @Override
+    public int getRemotePort() {
+        InetSocketAddress address = connection.getRemoteAddress();
+        return address == null ? -1 : address.getPort();
+    }
+
+    @Override
+    public String getLocalAddr() {
+        InetSocketAddress address = connection.getLocalAddress();
+        return address == null ? null : address.getAddress().getHostAddress();
+    }
+
+    @Override
+    public String getLocalName() {
+        return getLocalAddr();
+    }
+
+    @Override
+    public int getLocalPort() {
+        InetSocketAddress address = connection.getLocalAddress();
+        return address == null ? -1 : address.getPort();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? Collections.<String>emptyEnumeration() : Collections.enumeration(values);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("日期格式错误: " + name + ": " + value, e);
+        }
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        if (characterEncoding == null) {
+            characterEncoding = ServerResponse.charsetOf(getContentType());
+        }
+        return characterEncoding;
+    }
+
+    @Override
+    public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
+        if (!Charset.isSupported(env)) {
+            throw new UnsupportedEncodingException(env);
+        }
+        this.characterEncoding = env;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        if (reader != null) {
+            throw new IllegalStateException("getReader() has already been called");
+        }
+        if (inputStream == null) {
+            inputStream = new BodyStream(body);
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            if (inputStream != null) {
+                throw new IllegalStateException("getInputStream() has already been called");
+            }
+            String encoding = getCharacterEncoding();
+            reader = new BufferedReader(new InputStreamReader(new BodyStream(body),
+                    encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding)));
+        }
+        return reader;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters().get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters().get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters());
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters().keySet());
+    }
+
+    /**
+     * 第一次取参数时解析查询字符串与表单请求体
+     */
+    private Map<String, String[]> parameters() {
+        if (parameters == null) {
+            Map<String, String[]> parsed = new LinkedHashMap<>();
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            if (queryString != null) {
+                parseParameters(queryString, charset, parsed);
+            }
+            String contentType = getContentType();
+            if (body.length > 0 && inputStream == null && reader == null && contentType != null
+                    && contentType.regionMatches(true, 0, FORM_CONTENT_TYPE, 0, FORM_CONTENT_TYPE.length())) {
+                parseParameters(new String(body, StandardCharsets.ISO_8859_1), charset, parsed);
+            }
+            parameters = parsed;
+        }
+        return parameters;
+    }
+
+    private static void parseParameters(String query, Charset charset, Map<String, String[]> parameters) {
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start) {
+                int equals = query.indexOf('=', start);
+                String name;
+                String value;
+                if (equals < 0 || equals > end) {
+                    name = decode(query.substring(start, end), charset);
+                    value = "";
+                } else {
+                    name = decode(query.substring(start, equals), charset);
+                    value = decode(query.substring(equals + 1, end), charset);
+                }
+                String[] values = parameters.get(name);
+                if (values == null) {
+                    values = new String[]{value};
+                } else {
+                    String[] grown = new String[values.length + 1];
+                    System.arraycopy(values, 0, grown, 0, values.length);
+                    grown[values.length] = value;
+                    values = grown;
+                }
+                parameters.put(name, values);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static String decode(String value, Charset charset) {
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, charset.name());
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            // 不完整的转义按原样保留
+            return value;
+        }
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        if (o == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, o);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return connection.getServer().getServletContext();
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return dispatcherType;
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+        if (cookies == null) {
+            List<Cookie> parsed = new ArrayList<>();
+            List<String> values = headers.get("Cookie");
+            if (values != null) {
+                for (String value : values) {
+                    parseCookies(value, parsed);
+                }
+            }
+            cookies = parsed.toArray(new Cookie[0]);
+        }
+        // 按 servlet 规范，没有 Cookie 时返回 null
+        return cookies.length == 0 ? null : cookies.clone();
+    }
+
+    /**
+     * 解析 name=value; name2=value2，忽略 $ 开头的属性与 Cookie 不接受的名字
+     */
+    private static void parseCookies(String header, List<Cookie> cookies) {
+        for (String pair : header.split(";")) {
+            int equals = pair.indexOf('=');
+            if (equals < 0) {
+                continue;
+            }
+            String name = pair.substring(0, equals).trim();
+            String value = pair.substring(equals + 1).trim();
+            if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                value = value.substring(1, value.length() - 1);
+            }
+            if (name.isEmpty() || name.charAt(0) == '$') {
+                continue;
+            }
+            try {
+                cookies.add(new Cookie(name, value));
+            } catch (IllegalArgumentException e) {
+                // 名字是保留字或含有非法字符
+            }
+        }
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        if (session != null && session.isValid()) {
+            return session;
+        }
+        session = null;
+        ServerSessions sessions = connection.getServer().getSessions();
+        String id = getRequestedSessionId();
+        if (id != null) {
+            session = sessions.find(id);
+        }
+        if (session == null && create) {
+            if (response != null && response.isCommitted()) {
+                throw new IllegalStateException("响应已提交，无法创建会话");
+            }
+            session = sessions.create();
+            addSessionCookie(session.getId());
+        }
+        return session;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    /**
+     * 会话 id 放在 JSESSIONID Cookie 中，脚本不可读
+     */
+    private void addSessionCookie(String id) {
+        Cookie cookie = new Cookie(ServerSessions.COOKIE_NAME, id);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        Cookie[] cookies = getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (ServerSessions.COOKIE_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        String id = getRequestedSessionId();
+        return id != null && getSession(false) != null && id.equals(session.getId());
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return getRequestedSessionId() != null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+        return false;
+    }
+
+    @Override
+    public String changeSessionId() {
+        if (getSession(false) == null) {
+            throw new IllegalStateException("没有会话");
+        }
+        String id = connection.getServer().getSessions().changeId(session);
+        addSessionCookie(id);
+        return id;
+    }
+
+    @Override
+    public String getAuthType() {
+        return null;
+    }
+
+    @Override
+    public String getRemoteUser() {
+        return null;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return false;
+    }
+
+    @Override
+    public boolean authenticate(HttpServletResponse response) {
+        return false;
+    }
+
+    @Override
+    public void login(String username, String password) throws ServletException {
+        throw new ServletException("内置服务器不支持登录");
+    }
+
+    @Override
+    public void logout() {
+    }
+
+    @Override
+    public Collection<Part> getParts() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Part getPart(String name) {
+        return null;
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(String path) {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public String getRealPath(String path) {
+        return null;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return true;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        return startAsync(this, response);
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        if (asyncContext != null) {
+            throw new IllegalStateException("startAsync() has already been called");
+        }
+        asyncContext = new ServerAsyncContext(this, servletRequest, servletResponse);
+        return asyncContext;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return asyncContext != null && !asyncContext.isCompleted();
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        if (asyncContext == null) {
+            throw new IllegalStateException("startAsync() has not been called");
+        }
+        return asyncContext;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + requestURI + (queryString == null ? "" : "?" + queryString) + " " + protocol;
+    }
+
+    private static HttpServletRequest unsupported() {
+        return (HttpServletRequest) Proxy.newProxyInstance(ServerRequest.class.getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                    throw new UnsupportedOperationException(m.getName());
+                });
+    }
+
+    /**
+     * 内存中的请求体
+     */
+    private static final class BodyStream extends ServletInputStream {
+
+        private final byte[] body;
+        private int position;
+
+        BodyStream(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public int read() {
+            return position < body.length ? body[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= body.length) {
+                return -1;
+            }
+            int n = Math.min(len, body.length - position);
+            System.arraycopy(body, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return body.length - position;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return position >= body.length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("setReadListener");
+        }
+    }
+}
@@ -0,0 +1,693 @@
+package com.fantj.mvc.framework.server;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+* 内置服务器的 response -- 响应体写入直接内存块，处理结束后编码响应头，与响应体一起用 gathering write 发送
+* 响应完整缓冲后才发送，flushBuffer 不会提交响应，因此出错时总能改写为错误响应
+* servlet 按 sendfile 约定给出文件时，响应体改为该文件区间，由连接用 transferTo 发送
+* @author JiaoFanTing
+**/
+final class ServerResponse extends HttpServletResponseWrapper {
+
+    private static final String DEFAULT_CHARSET = "ISO-8859-1";
+    private static final String[] REASONS = new String[600];
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    /**
+     * 按秒缓存的 Date 响应头
+     */
+    private static volatile CachedDate date = new CachedDate(0);
+
+    static {
+        REASONS[100] = "Continue";
+        REASONS[200] = "OK";
+        REASONS[201] = "Created";
+        REASONS[202] = "Accepted";
+        REASONS[204] = "No Content";
+        REASONS[206] = "Partial Content";
+        REASONS[301] = "Moved Permanently";
+        REASONS[302] = "Found";
+        REASONS[303] = "See Other";
+        REASONS[304] = "Not Modified";
+        REASONS[307] = "Temporary Redirect";
+        REASONS[308] = "Permanent Redirect";
+        REASONS[400] = "Bad Request";
+        REASONS[401] = "Unauthorized";
+        REASONS[403] = "Forbidden";
+        REASONS[404] = "Not Found";
+        REASONS[405] = "Method Not Allowed";
+        REASONS[406] = "Not Acceptable";
+        REASONS[408] = "Request Timeout";
+        REASONS[409] = "Conflict";
+        REASONS[410] = "Gone";
+        REASONS[411] = "Length Required";
+        REASONS[412] = "Precondition Failed";
+        REASONS[413] = "Payload Too Large";
+        REASONS[414] = "URI Too Long";
+        REASONS[415] = "Unsupported Media Type";
+        REASONS[416] = "Range Not Satisfiable";
+        REASONS[429] = "Too Many Requests";
+        REASONS[431] = "Request Header Fields Too Large";
+        REASONS[500] = "Internal Server Error";
+        REASONS[501] = "Not Implemented";
+        REASONS[502] = "Bad Gateway";
+        REASONS[503] = "Service Unavailable";
+        REASONS[504] = "Gateway Timeout";
+        REASONS[505] = "HTTP Version Not Supported";
+    }
+
+    private final ServerRequest request;
+    private final BufferPool pool;
+    /**
+     * 响应头，名称不区分大小写，Content-Type 与 Content-Length 单独保存
+     */
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Body body = new Body();
+    private int status = SC_OK;
+    private String contentType;
+    private String characterEncoding;
+    private long contentLength = -1;
+    private PrintWriter writer;
+    private boolean usingStream;
+    /**
+     * sendError 之后忽略后续输出
+     */
+    private boolean errorSent;
+    private boolean committed;
+    /**
+     * servlet 要求 sendfile 时作为响应体的文件区间，提交后交给连接发送
+     */
+    private FileRegion file;
+
+    ServerResponse(ServerRequest request, BufferPool pool) {
+        super(unsupported());
+        this.request = request;
+        this.pool = pool;
+    }
+
+    /**
+     * 取 Content-Type 中的 charset，没有时返回 null
+     */
+    static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        String charset = contentType.substring(index + "charset=".length());
+        int end = charset.indexOf(';');
+        if (end >= 0) {
+            charset = charset.substring(0, end);
+        }
+        charset = charset.trim();
+        if (charset.length() > 1 && charset.charAt(0) == '"' && charset.charAt(charset.length() - 1) == '"') {
+            charset = charset.substring(1, charset.length() - 1);
+        }
+        return charset.isEmpty() ? null : charset;
+    }
+
+    static String reasonOf(int status) {
+        String reason = status >= 0 && status < REASONS.length ? REASONS[status] : null;
+        return reason == null ? "" : reason;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        if (!errorSent) {
+            this.status = sc;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        setStatus(sc);
+    }
+
+    @Override
+    public void sendError(int sc) {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        if (committed) {
+            throw new IllegalStateException("Response has already been committed");
+        }
+        resetBuffer();
+        status = sc;
+        contentType = "text/plain;charset=UTF-8";
+        characterEncoding = "UTF-8";
+        byte[] text = (sc + " " + (msg == null ? reasonOf(sc) : msg)).getBytes(StandardCharsets.UTF_8);
+        body.write(text, 0, text.length);
+        errorSent = true;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        if (committed) {
+            throw new IllegalStateException("Response has already been committed");
+        }
+        resetBuffer();
+        status = SC_FOUND;
+        setHeader("Location", location);
+        errorSent = true;
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name) || "Content-Type".equalsIgnoreCase(name) && contentType != null
+                || "Content-Length".equalsIgnoreCase(name) && contentLength >= 0;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (errorSent || special(name, value)) {
+            return;
+        }
+        if (value == null) {
+            headers.remove(name);
+            return;
+        }
+        List<String> values = new ArrayList<>(1);
+        values.add(value);
+        headers.put(name, values);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (errorSent || value == null || special(name, value)) {
+            return;
+        }
+        headers.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+    }
+
+    /**
+     * 写成一个 Set-Cookie 响应头，Max-Age 同时给出 Expires 以兼容旧客户端
+     */
+    @Override
+    public void addCookie(Cookie cookie) {
+        StringBuilder header = new StringBuilder(cookie.getName()).append('=');
+        if (cookie.getValue() != null) {
+            header.append(cookie.getValue());
+        }
+        int maxAge = cookie.getMaxAge();
+        if (maxAge >= 0) {
+            header.append("; Max-Age=").append(maxAge).append("; Expires=")
+                    .append(HTTP_DATE.format(Instant.ofEpochSecond(maxAge == 0 ? 0 : System.currentTimeMillis() / 1000 + maxAge)));
+        }
+        if (cookie.getDomain() != null) {
+            header.append("; Domain=").append(cookie.getDomain());
+        }
+        if (cookie.getPath() != null) {
+            header.append("; Path=").append(cookie.getPath());
+        }
+        if (cookie.getSecure()) {
+            header.append("; Secure");
+        }
+        if (cookie.isHttpOnly()) {
+            header.append("; HttpOnly");
+        }
+        addHeader("Set-Cookie", header.toString());
+    }
+
+    /**
+     * Content-Type 与 Content-Length 通过对应的方法设置
+     */
+    private boolean special(String name, String value) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            setContentType(value);
+            return true;
+        }
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value == null ? -1 : Long.parseLong(value.trim()));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, HTTP_DATE.format(Instant.ofEpochMilli(date)));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, HTTP_DATE.format(Instant.ofEpochMilli(date)));
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            return getContentType();
+        }
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            return contentLength < 0 ? null : String.valueOf(contentLength);
+        }
+        List<String> values = headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? Collections.<String>emptyList() : new ArrayList<>(values);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return new ArrayList<>(headers.keySet());
+    }
+
+    @Override
+    public String getContentType() {
+        if (contentType == null || writer == null || charsetOf(contentType) != null) {
+            return contentType;
+        }
+        return contentType + ";charset=" + getCharacterEncoding();
+    }
+
+    @Override
+    public void setContentType(String type) {
+        if (errorSent) {
+            return;
+        }
+        this.contentType = type;
+        String charset = charsetOf(type);
+        if (charset != null && writer == null) {
+            this.characterEncoding = charset;
+        }
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding == null ? DEFAULT_CHARSET : characterEncoding;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        if (writer == null && !errorSent) {
+            this.characterEncoding = charset;
+        }
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (!errorSent) {
+            this.contentLength = len;
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        usingStream = true;
+        return body;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws UnsupportedEncodingException {
+        if (writer == null) {
+            if (usingStream) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(body, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public int getBufferSize() {
+        return BufferPool.CHUNK_SIZE;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        headers.clear();
+        status = SC_OK;
+        contentType = null;
+        characterEncoding = null;
+        contentLength = -1;
+        writer = null;
+        usingStream = false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (committed) {
+            throw new IllegalStateException("Response has already been committed");
+        }
+        if (writer != null) {
+            // 丢弃 writer 中尚未编码的字符
+            writer = new PrintWriter(new OutputStreamWriter(body, Charset.forName(getCharacterEncoding())));
+        }
+        body.release();
+        errorSent = false;
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        return url;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public String encodeUrl(String url) {
+        return url;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public String encodeRedirectUrl(String url) {
+        return url;
+    }
+
+    /**
+     * servlet 是否要求关闭连接
+     */
+    boolean isCloseRequested() {
+        List<String> connection = headers.get("Connection");
+        return connection != null && "close".equalsIgnoreCase(connection.get(0));
+    }
+
+    /**
+     * 提交响应：编码状态行与响应头，返回待发送的缓冲区（已 flip），之后响应体的块归调用方所有
+     * 响应体不超过响应头所在块的剩余空间时复制进去，只发送一个缓冲区
+     */
+    ByteBuffer[] commit(boolean keepAlive) {
+        if (writer != null) {
+            writer.flush();
+        }
+        committed = true;
+        boolean head = "HEAD".equals(request.getMethod());
+        boolean bodyAllowed = status >= 200 && status != SC_NO_CONTENT && status != SC_NOT_MODIFIED;
+        long length = body.size;
+        if (bodyAllowed && !head && !errorSent) {
+            file = openFile();
+            if (file != null) {
+                body.release();
+                length = file.remaining();
+            }
+        }
+
+        HeaderWriter out = new HeaderWriter(pool.acquire());
+        out.ascii("HTTP/1.1 ").number(status).ascii(" ").ascii(reasonOf(status)).crlf();
+        out.bytes(currentDate());
+        String type = getContentType();
+        if (type != null) {
+            out.ascii("Content-Type: ").ascii(type).crlf();
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if ("Connection".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                out.ascii(header.getKey()).ascii(": ").ascii(value).crlf();
+            }
+        }
+        if (bodyAllowed) {
+            // HEAD 请求由 HttpServlet 计算出不带响应体时的长度
+            out.ascii("Content-Length: ").number(head && contentLength >= 0 ? contentLength : length).crlf();
+        }
+        if (!keepAlive) {
+            out.ascii("Connection: close").crlf();
+        } else if ("HTTP/1.0".equals(request.getProtocol())) {
+            out.ascii("Connection: keep-alive").crlf();
+        }
+        out.crlf();
+
+        ByteBuffer header = out.buffer;
+        List<ByteBuffer> chunks = body.chunks;
+        if (head || !bodyAllowed || length == 0 || file != null) {
+            body.release();
+            header.flip();
+            return new ByteBuffer[]{header};
+        }
+        if (length <= header.remaining()) {
+            for (ByteBuffer chunk : chunks) {
+                chunk.flip();
+                header.put(chunk);
+            }
+            body.release();
+            header.flip();
+            return new ByteBuffer[]{header};
+        }
+        ByteBuffer[] buffers = new ByteBuffer[chunks.size() + 1];
+        header.flip();
+        buffers[0] = header;
+        for (int i = 0; i < chunks.size(); i++) {
+            ByteBuffer chunk = chunks.get(i);
+            chunk.flip();
+            buffers[i + 1] = chunk;
+        }
+        chunks.clear();
+        body.size = 0;
+        return buffers;
+    }
+
+    /**
+     * 打开 servlet 要求发送的文件，打不开时改为没有响应体的 500
+     */
+    private FileRegion openFile() {
+        try {
+            return FileRegion.of(request);
+        } catch (IOException | RuntimeException e) {
+            request.getConnection().getServer().logError("sendfile 失败: " + request.getAttribute(FileRegion.FILENAME), e);
+            headers.clear();
+            status = SC_INTERNAL_SERVER_ERROR;
+            contentType = null;
+            body.release();
+            return null;
+        }
+    }
+
+    /**
+     * 提交后作为响应体的文件区间，没有时为 null
+     */
+    FileRegion file() {
+        return file;
+    }
+
+    /**
+     * 释放未发送的响应体
+     */
+    void discard() {
+        body.release();
+    }
+
+    private static byte[] currentDate() {
+        CachedDate cached = date;
+        long second = System.currentTimeMillis() / 1000;
+        if (cached.second != second) {
+            cached = new CachedDate(second);
+            date = cached;
+        }
+        return cached.header;
+    }
+
+    private static HttpServletResponse unsupported() {
+        return (HttpServletResponse) Proxy.newProxyInstance(ServerResponse.class.getClassLoader(),
+                new Class[]{HttpServletResponse.class}, (proxy, m, args) -> {
+                    throw new UnsupportedOperationException(m.getName());
+                });
+    }
+
+    private static final class CachedDate {
+        final long second;
+        final byte[] header;
+
+        CachedDate(long second) {
+            this.second = second;
+            this.header = ("Date: " + HTTP_DATE.format(Instant.ofEpochSecond(second)) + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * 把响应头按 ISO-8859-1 写入缓冲区，超出一个块时换成更大的堆缓冲区
+     */
+    private final class HeaderWriter {
+
+        ByteBuffer buffer;
+
+        HeaderWriter(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        HeaderWriter ascii(String value) {
+            ensure(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                // 响应头中不允许换行，防止响应拆分
+                buffer.put(c == '\r' || c == '\n' ? (byte) ' ' : (byte) c);
+            }
+            return this;
+        }
+
+        HeaderWriter number(long value) {
+            return ascii(Long.toString(value));
+        }
+
+        HeaderWriter bytes(byte[] value) {
+            ensure(value.length);
+            buffer.put(value);
+            return this;
+        }
+
+        HeaderWriter crlf() {
+            ensure(2);
+            buffer.put((byte) '\r').put((byte) '\n');
+            return this;
+        }
+
+        private void ensure(int length) {
+            if (buffer.remaining() >= length) {
+                return;
+            }
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            grown.put(buffer);
+            pool.release(buffer);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * 响应体：写入从池中取出的直接内存块
+     */
+    private final class Body extends ServletOutputStream {
+
+        final List<ByteBuffer> chunks = new ArrayList<>(2);
+        long size;
+
+        @Override
+        public void write(int b) {
+            if (errorSent) {
+                return;
+            }
+            current().put((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (errorSent) {
+                return;
+            }
+            size += len;
+            while (len > 0) {
+                ByteBuffer chunk = current();
+                int n = Math.min(len, chunk.remaining());
+                chunk.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private ByteBuffer current() {
+            if (committed) {
+                throw new IllegalStateException("Response has already been committed");
+            }
+            ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (chunk == null || !chunk.hasRemaining()) {
+                chunk = pool.acquire();
+                chunks.add(chunk);
+            }
+            return chunk;
+        }
+
+        void release() {
+            for (ByteBuffer chunk : chunks) {
+                pool.release(chunk);
+            }
+            chunks.clear();
+            size = 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("setWriteListener");
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.fantj.mvc.framework.server;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* 内置服务器的会话 -- 只保存在内存中，服务器重启后丢失；由 {@link ServerSessions} 创建与过期
+* @author JiaoFanTing
+**/
+final class ServerSession implements HttpSession {
+
+    private final ServerSessions sessions;
+    private final long creationTime;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private volatile String id;
+    private volatile long lastAccessedTime;
+    /**
+     * 最大空闲秒数，小于等于 0 表示不过期
+     */
+    private volatile int maxInactiveInterval;
+    private volatile boolean isNew = true;
+    private volatile boolean valid = true;
+
+    ServerSession(ServerSessions sessions, String id, int maxInactiveInterval) {
+        this.sessions = sessions;
+        this.id = id;
+        this.creationTime = System.currentTimeMillis();
+        this.lastAccessedTime = creationTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    /**
+     * 带着会话 id 的请求到达：客户端已经拿到了 id，不再是新会话
+     */
+    void access(long now) {
+        lastAccessedTime = now;
+        isNew = false;
+    }
+
+    boolean isExpired(long now) {
+        return !valid || maxInactiveInterval > 0 && now - lastAccessedTime > maxInactiveInterval * 1000L;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * 标记失效并解绑所有属性，只执行一次
+     */
+    void expire() {
+        synchronized (this) {
+            if (!valid) {
+                return;
+            }
+            valid = false;
+        }
+        for (String name : new ArrayList<>(attributes.keySet())) {
+            unbind(name, attributes.remove(name));
+        }
+    }
+
+    private void checkValid() {
+        if (!valid) {
+            throw new IllegalStateException("会话已失效: " + id);
+        }
+    }
+
+    private void unbind(String name, Object value) {
+        if (value instanceof HttpSessionBindingListener) {
+            ((HttpSessionBindingListener) value).valueUnbound(new HttpSessionBindingEvent(this, name, value));
+        }
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return sessions.getServletContext();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        this.maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    @Deprecated
+    public HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        return attributes.get(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        checkValid();
+        return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(name);
+            return;
+        }
+        if (value instanceof HttpSessionBindingListener) {
+            ((HttpSessionBindingListener) value).valueBound(new HttpSessionBindingEvent(this, name, value));
+        }
+        Object previous = attributes.put(name, value);
+        if (previous != null && previous != value) {
+            unbind(name, previous);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        unbind(name, attributes.remove(name));
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        sessions.remove(this);
+        expire();
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+}
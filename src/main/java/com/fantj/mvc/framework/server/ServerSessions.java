@@ -0,0 +1,118 @@
+package com.fantj.mvc.framework.server;
+
+import javax.servlet.ServletContext;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* 内存中的会话表 -- 会话 id 通过 JSESSIONID Cookie 传递，取用时检查是否过期，
+* 过期但一直没有再被访问的会话由服务器的定时任务定期清理
+* @author JiaoFanTing
+**/
+final class ServerSessions {
+
+    static final String COOKIE_NAME = "JSESSIONID";
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int ID_BYTES = 16;
+
+    private final ServletContext servletContext;
+    /**
+     * 新会话的最大空闲秒数
+     */
+    private final int timeout;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, ServerSession> sessions = new ConcurrentHashMap<>();
+
+    ServerSessions(ServletContext servletContext, int timeout) {
+        this.servletContext = servletContext;
+        this.timeout = timeout;
+    }
+
+    ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    /**
+     * 按 id 取有效的会话并记录访问，不存在或已过期时返回 null
+     */
+    ServerSession find(String id) {
+        ServerSession session = sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.isExpired(now)) {
+            remove(session);
+            session.expire();
+            return null;
+        }
+        session.access(now);
+        return session;
+    }
+
+    ServerSession create() {
+        while (true) {
+            ServerSession session = new ServerSession(this, nextId(), timeout);
+            if (sessions.putIfAbsent(session.getId(), session) == null) {
+                return session;
+            }
+        }
+    }
+
+    /**
+     * 换一个新的 id，防止会话固定攻击；返回新 id
+     */
+    String changeId(ServerSession session) {
+        while (true) {
+            String id = nextId();
+            if (sessions.putIfAbsent(id, session) == null) {
+                sessions.remove(session.getId(), session);
+                session.setId(id);
+                return id;
+            }
+        }
+    }
+
+    void remove(ServerSession session) {
+        sessions.remove(session.getId(), session);
+    }
+
+    /**
+     * 清理已过期的会话，由定时任务调用
+     */
+    void purge() {
+        long now = System.currentTimeMillis();
+        Iterator<ServerSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            ServerSession session = it.next();
+            if (session.isExpired(now)) {
+                it.remove();
+                session.expire();
+            }
+        }
+    }
+
+    /**
+     * 服务器关闭时让所有会话失效，触发属性的解绑回调
+     */
+    void clear() {
+        for (ServerSession session : sessions.values()) {
+            session.expire();
+        }
+        sessions.clear();
+    }
+
+    private String nextId() {
+        byte[] bytes = new byte[ID_BYTES];
+        random.nextBytes(bytes);
+        char[] chars = new char[ID_BYTES * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
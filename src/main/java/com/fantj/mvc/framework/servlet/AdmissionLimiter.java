@@ -0,0 +1,199 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* 全局自适应并发上限 -- 请求数达到上限时直接拒绝，上限按观察到的延迟调整
+* 每个采样窗口结束时比较窗口内的平均延迟与长期平均延迟（上升时慢、下降时快，近似无排队时的延迟）：
+* gradient：上限乘以两者之比（延迟没有上升时为 1），再加上 sqrt(上限) 的排队余量
+* aimd：延迟超过长期平均的 tolerance 倍时乘以 backoff，否则加 1
+* 准入只用 CAS，窗口由抢到 CAS 的线程结算，其他线程不等待
+* @author JiaoFanTing
+**/
+final class AdmissionLimiter implements AdmissionLimiterMXBean {
+
+    static final String GRADIENT = "gradient";
+    static final String AIMD = "aimd";
+
+    /**
+     * 延迟上升不超过该倍数时视为正常波动
+     */
+    private static final double TOLERANCE = 1.5;
+    /**
+     * gradient 的平滑系数，每个窗口只向新上限移动这个比例
+     */
+    private static final double SMOOTHING = 0.2;
+    /**
+     * aimd 延迟上升时的缩减比例
+     */
+    private static final double BACKOFF = 0.9;
+    /**
+     * 延迟上升时长期平均只追赶差值的 1/LONG_WINDOWS，持续排队不会很快被当成常态；延迟下降时追赶一半
+     */
+    private static final int LONG_WINDOWS = 200;
+    /**
+     * 一个窗口至少的样本数，样本太少时继续累积
+     */
+    private static final int MIN_SAMPLES = 10;
+
+    private final boolean aimd;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 当前窗口的开始时间、延迟总和、样本数与最大并发
+     */
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder windowRtt = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+
+    /**
+     * 以下字段只由结算窗口的线程写入
+     */
+    private volatile double estimate;
+    private volatile int limit;
+    private volatile long shortRtt;
+    private volatile long longRtt;
+
+    AdmissionLimiter(String algorithm, int initialLimit, int minLimit, int maxLimit, long windowMillis) {
+        if (!GRADIENT.equals(algorithm) && !AIMD.equals(algorithm)) {
+            throw new IllegalArgumentException("未知的准入控制算法: " + algorithm);
+        }
+        if (minLimit <= 0 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("并发上限范围无效: " + minLimit + " - " + maxLimit);
+        }
+        this.aimd = AIMD.equals(algorithm);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.estimate = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimate;
+    }
+
+    /**
+     * 尝试准入，成功后必须调用 {@link #release(long)}
+     */
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        admitted.increment();
+        if (current + 1 > windowMaxInFlight.get()) {
+            windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * 请求结束，记录它的延迟；窗口到期时由抢到的线程调整上限
+     */
+    void release(long rttNanos) {
+        inFlight.decrementAndGet();
+        windowRtt.add(rttNanos);
+        windowSamples.increment();
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start >= windowNanos && windowSamples.sum() >= MIN_SAMPLES && windowStart.compareAndSet(start, now)) {
+            long samples = windowSamples.sumThenReset();
+            long total = windowRtt.sumThenReset();
+            int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+            if (samples > 0) {
+                adjust(total / samples, maxInFlight);
+            }
+        }
+    }
+
+    private void adjust(long rtt, int maxInFlight) {
+        shortRtt = rtt;
+        long longTerm = longRtt;
+        if (longTerm == 0) {
+            longRtt = rtt;
+            return;
+        }
+        longTerm += rtt > longTerm ? (rtt - longTerm) / LONG_WINDOWS : (rtt - longTerm) / 2;
+        longRtt = longTerm;
+        double current = estimate;
+        // 并发远没用满时延迟说明不了什么，不增加上限
+        boolean saturated = maxInFlight * 2 >= current;
+        double next;
+        if (aimd) {
+            if (rtt > longTerm * TOLERANCE) {
+                next = current * BACKOFF;
+            } else {
+                next = saturated ? current + 1 : current;
+            }
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longTerm / rtt));
+            double target = current * gradient + Math.sqrt(current);
+            if (!saturated) {
+                target = Math.min(target, current);
+            }
+            next = current * (1 - SMOOTHING) + target * SMOOTHING;
+        }
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+        estimate = next;
+        limit = (int) next;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return aimd ? AIMD : GRADIENT;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getShortRtt() {
+        return shortRtt;
+    }
+
+    @Override
+    public long getLongRtt() {
+        return longRtt;
+    }
+
+    /**
+     * 以 json 输出统计信息
+     */
+    void writeJson(StringBuilder out) {
+        out.append("{\"algorithm\":\"").append(getAlgorithm())
+                .append("\",\"limit\":").append(getLimit())
+                .append(",\"inFlight\":").append(getInFlight())
+                .append(",\"admitted\":").append(getAdmittedCount())
+                .append(",\"rejected\":").append(getRejectedCount())
+                .append(",\"shortRtt\":").append(getShortRtt())
+                .append(",\"longRtt\":").append(getLongRtt())
+                .append('}');
+    }
+}
@@ -0,0 +1,37 @@
+package com.fantj.mvc.framework.servlet;
+
+/**
+* 全局准入控制的统计信息，通过 JMX 暴露
+* @author JiaoFanTing
+**/
+public interface AdmissionLimiterMXBean {
+
+    /**
+     * 调整算法：gradient 或 aimd
+     */
+    String getAlgorithm();
+
+    /**
+     * 当前的并发上限
+     */
+    int getLimit();
+
+    /**
+     * 正在处理的请求数
+     */
+    int getInFlight();
+
+    long getAdmittedCount();
+
+    long getRejectedCount();
+
+    /**
+     * 最近一个采样窗口的平均延迟（纳秒）
+     */
+    long getShortRtt();
+
+    /**
+     * 长期平均延迟（纳秒），作为无排队时延迟的估计
+     */
+    long getLongRtt();
+}
@@ -0,0 +1,16 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+* 参数解析器 -- 负责 handler 方法某一个位置上的参数取值
+* @author JiaoFanTing
+**/
+interface ArgumentResolver {
+
+    /**
+     * 从本次请求中解析出参数值
+     */
+    Object resolve(HttpServletRequest req, HttpServletResponse resp);
+}
@@ -0,0 +1,170 @@
+package com.fantj.mvc.framework.servlet;
+
+import com.fantj.mvc.framework.annotation.RequestParam;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Array;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+* 参数解析计划 -- 启动时为每个 handler 方法生成按参数下标排列的解析器数组
+* @author JiaoFanTing
+**/
+final class ArgumentResolvers {
+
+    private static final ArgumentResolver REQUEST = (req, resp) -> req;
+    private static final ArgumentResolver RESPONSE = (req, resp) -> resp;
+
+    /**
+     * 基本类型的默认值，参数缺失时使用
+     */
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = new HashMap<>();
+    /**
+     * 类型转换器缓存
+     */
+    private static final Map<Class<?>, Function<String, Object>> CONVERTERS = new ConcurrentHashMap<>();
+
+    static {
+        PRIMITIVE_DEFAULTS.put(int.class, 0);
+        PRIMITIVE_DEFAULTS.put(long.class, 0L);
+        PRIMITIVE_DEFAULTS.put(double.class, 0D);
+        PRIMITIVE_DEFAULTS.put(float.class, 0F);
+        PRIMITIVE_DEFAULTS.put(short.class, (short) 0);
+        PRIMITIVE_DEFAULTS.put(byte.class, (byte) 0);
+        PRIMITIVE_DEFAULTS.put(char.class, (char) 0);
+        PRIMITIVE_DEFAULTS.put(boolean.class, false);
+
+        CONVERTERS.put(String.class, s -> s);
+        CONVERTERS.put(int.class, Integer::valueOf);
+        CONVERTERS.put(Integer.class, Integer::valueOf);
+        CONVERTERS.put(long.class, Long::valueOf);
+        CONVERTERS.put(Long.class, Long::valueOf);
+        CONVERTERS.put(double.class, Double::valueOf);
+        CONVERTERS.put(Double.class, Double::valueOf);
+        CONVERTERS.put(float.class, Float::valueOf);
+        CONVERTERS.put(Float.class, Float::valueOf);
+        CONVERTERS.put(short.class, Short::valueOf);
+        CONVERTERS.put(Short.class, Short::valueOf);
+        CONVERTERS.put(byte.class, Byte::valueOf);
+        CONVERTERS.put(Byte.class, Byte::valueOf);
+        CONVERTERS.put(boolean.class, Boolean::valueOf);
+        CONVERTERS.put(Boolean.class, Boolean::valueOf);
+        CONVERTERS.put(char.class, s -> s.charAt(0));
+        CONVERTERS.put(Character.class, s -> s.charAt(0));
+    }
+
+    private ArgumentResolvers() {
+    }
+
+    /**
+     * 为方法的全部参数生成解析计划
+     */
+    static ArgumentResolver[] plan(Parameter[] parameters) {
+        ArgumentResolver[] resolvers = new ArgumentResolver[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            resolvers[i] = forParameter(parameters[i]);
+        }
+        return resolvers;
+    }
+
+    private static ArgumentResolver forParameter(Parameter parameter) {
+        Class<?> type = parameter.getType();
+        if (type == HttpServletRequest.class) {
+            return REQUEST;
+        }
+        if (type == HttpServletResponse.class) {
+            return RESPONSE;
+        }
+        RequestParam requestParam = parameter.getAnnotation(RequestParam.class);
+        if (requestParam == null) {
+            return constant(PRIMITIVE_DEFAULTS.get(type));
+        }
+        String name = requestParam.value();
+        if (name.isEmpty() && parameter.isNamePresent()) {
+            name = parameter.getName();
+        }
+        if (name.isEmpty()) {
+            // 拿不到参数名，无法绑定
+            return constant(PRIMITIVE_DEFAULTS.get(type));
+        }
+        if (type.isArray()) {
+            return arrayParam(name, requestParam.required(), type.getComponentType());
+        }
+        return param(name, requestParam.required(), type);
+    }
+
+    private static ArgumentResolver constant(Object value) {
+        return (req, resp) -> value;
+    }
+
+    /**
+     * 单值参数：只按声明的参数名取值并转换
+     */
+    private static ArgumentResolver param(String name, boolean required, Class<?> type) {
+        Function<String, Object> converter = converter(type);
+        Object defaultValue = PRIMITIVE_DEFAULTS.get(type);
+        return (req, resp) -> {
+            String value = req.getParameter(name);
+            if (value == null || (value.isEmpty() && type != String.class)) {
+                return missing(name, required, defaultValue);
+            }
+            return convert(name, converter, value);
+        };
+    }
+
+    /**
+     * 数组参数：取该参数名的全部值
+     */
+    private static ArgumentResolver arrayParam(String name, boolean required, Class<?> componentType) {
+        Function<String, Object> converter = converter(componentType);
+        return (req, resp) -> {
+            String[] values = req.getParameterValues(name);
+            if (values == null) {
+                return missing(name, required, null);
+            }
+            if (componentType == String.class) {
+                return values;
+            }
+            Object array = Array.newInstance(componentType, values.length);
+            for (int i = 0; i < values.length; i++) {
+                Array.set(array, i, convert(name, converter, values[i]));
+            }
+            return array;
+        };
+    }
+
+    private static Object missing(String name, boolean required, Object defaultValue) {
+        if (required) {
+            throw new ResponseStatusException(HttpServletResponse.SC_BAD_REQUEST, "缺少请求参数: " + name);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 转换参数值，格式错误属于客户端错误，响应 400
+     */
+    private static Object convert(String name, Function<String, Object> converter, String value) {
+        try {
+            return converter.apply(value);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpServletResponse.SC_BAD_REQUEST, "参数格式错误: " + name, e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<String, Object> converter(Class<?> type) {
+        Function<String, Object> converter = CONVERTERS.get(type);
+        if (converter != null) {
+            return converter;
+        }
+        if (type.isEnum()) {
+            return CONVERTERS.computeIfAbsent(type, t -> s -> Enum.valueOf((Class<? extends Enum>) t, s));
+        }
+        throw new IllegalArgumentException("不支持的参数类型: " + type.getName());
+    }
+}
@@ -0,0 +1,353 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+* 批量请求中的一个子请求 -- 路径、查询参数与请求属性独立，其余请求头沿用外层请求
+* 不带 Accept-Encoding 与 If-None-Match：子响应要原样嵌入批量响应，不能压缩或返回 304
+* 支持异步 handler：complete 时通知 {@link BatchResponse}，不支持 dispatch
+* @author JiaoFanTing
+**/
+final class BatchRequest extends HttpServletRequestWrapper {
+
+    private final String path;
+    private final String queryString;
+    private final BatchResponse response;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private Map<String, String[]> parameters;
+    private volatile BatchAsyncContext asyncContext;
+
+    /**
+     * @param target 子请求的路径，可以带查询字符串
+     */
+    BatchRequest(HttpServletRequest request, String target, BatchResponse response) {
+        super(request);
+        int query = target.indexOf('?');
+        this.path = query < 0 ? target : target.substring(0, query);
+        this.queryString = query < 0 ? null : target.substring(query + 1);
+        this.response = response;
+    }
+
+    @Override
+    public String getMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getRequestURI() {
+        return path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer();
+        url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(path);
+        return url;
+    }
+
+    @Override
+    public String getServletPath() {
+        return path;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getContentType() {
+        return null;
+    }
+
+    @Override
+    public int getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return -1;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return isHidden(name) ? null : super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        return isHidden(name) ? -1 : super.getDateHeader(name);
+    }
+
+    private static boolean isHidden(String name) {
+        return ContentEncoding.ACCEPT_ENCODING.equalsIgnoreCase(name) || ETag.IF_NONE_MATCH.equalsIgnoreCase(name)
+                || "If-Modified-Since".equalsIgnoreCase(name);
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters().get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters().get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters());
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters().keySet());
+    }
+
+    /**
+     * 第一次取参数时解析查询字符串，按 UTF-8 解码
+     */
+    private Map<String, String[]> parameters() {
+        if (parameters == null) {
+            Map<String, String[]> parsed = new LinkedHashMap<>();
+            int start = 0;
+            while (queryString != null && start <= queryString.length()) {
+                int end = queryString.indexOf('&', start);
+                if (end < 0) {
+                    end = queryString.length();
+                }
+                if (end > start) {
+                    int equals = queryString.indexOf('=', start);
+                    boolean hasValue = equals >= 0 && equals < end;
+                    String name = decode(queryString.substring(start, hasValue ? equals : end));
+                    String value = hasValue ? decode(queryString.substring(equals + 1, end)) : "";
+                    String[] values = parsed.get(name);
+                    if (values == null) {
+                        values = new String[]{value};
+                    } else {
+                        String[] grown = new String[values.length + 1];
+                        System.arraycopy(values, 0, grown, 0, values.length);
+                        grown[values.length] = value;
+                        values = grown;
+                    }
+                    parsed.put(name, values);
+                }
+                start = end + 1;
+            }
+            parameters = parsed;
+        }
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            // 不完整的转义按原样保留
+            return value;
+        }
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        synchronized (attributes) {
+            return attributes.get(name);
+        }
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        synchronized (attributes) {
+            return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+        }
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        synchronized (attributes) {
+            if (value == null) {
+                attributes.remove(name);
+            } else {
+                attributes.put(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        synchronized (attributes) {
+            attributes.remove(name);
+        }
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return asyncContext != null;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        return startAsync(this, response);
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        if (asyncContext != null) {
+            throw new IllegalStateException("异步处理已经开始");
+        }
+        asyncContext = new BatchAsyncContext(servletRequest, servletResponse);
+        return asyncContext;
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        if (asyncContext == null) {
+            throw new IllegalStateException("异步处理没有开始");
+        }
+        return asyncContext;
+    }
+
+    /**
+     * 批量请求等待超时：异步处理中的子请求通知监听器，由监听器写出超时响应
+     */
+    void timeout() {
+        BatchAsyncContext context = asyncContext;
+        if (context != null) {
+            context.timeout();
+        }
+    }
+
+    private final class BatchAsyncContext implements AsyncContext {
+
+        private final ServletRequest suppliedRequest;
+        private final ServletResponse suppliedResponse;
+        private final List<AsyncListener> listeners = new CopyOnWriteArrayList<>();
+        private long timeout;
+
+        BatchAsyncContext(ServletRequest suppliedRequest, ServletResponse suppliedResponse) {
+            this.suppliedRequest = suppliedRequest;
+            this.suppliedResponse = suppliedResponse;
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return suppliedRequest;
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return suppliedResponse;
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return suppliedRequest == BatchRequest.this && suppliedResponse == response;
+        }
+
+        @Override
+        public void dispatch() {
+            throw new UnsupportedOperationException("dispatch");
+        }
+
+        @Override
+        public void dispatch(String path) {
+            throw new UnsupportedOperationException("dispatch");
+        }
+
+        @Override
+        public void dispatch(ServletContext context, String path) {
+            throw new UnsupportedOperationException("dispatch");
+        }
+
+        @Override
+        public void complete() {
+            response.complete();
+        }
+
+        void timeout() {
+            AsyncEvent event = new AsyncEvent(this, suppliedRequest, suppliedResponse);
+            for (AsyncListener listener : listeners) {
+                try {
+                    listener.onTimeout(event);
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public void start(Runnable run) {
+            CompletableFuture.runAsync(run);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest servletRequest, ServletResponse servletResponse) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+            try {
+                return clazz.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new ServletException(e);
+            }
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+            // 超时由批量请求统一控制
+            this.timeout = timeout;
+        }
+
+        @Override
+        public long getTimeout() {
+            return timeout;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.fantj.mvc.framework.servlet;
+
+/**
+* 缓存条目的公共部分 -- 响应体字节、按压缩格式懒生成的压缩结果与近似 LRU 的访问时间
+* {@link ResponseCache} 与 {@link StaticResources} 的条目都继承它，淘汰见 {@link SampledLru}
+* @author JiaoFanTing
+**/
+abstract class CachedBody {
+
+    /**
+     * 原始字节，只缓存信息的条目（如大文件）为 null
+     */
+    final byte[] body;
+    /**
+     * 最后一次访问时缓存访问时钟的值
+     */
+    volatile long lastAccess;
+    /**
+     * 按压缩格式缓存的压缩结果，第一次需要时生成
+     */
+    private volatile byte[] gzip;
+    private volatile byte[] deflate;
+
+    CachedBody(byte[] body) {
+        this.body = body;
+    }
+
+    /**
+     * body 压缩后的字节；并发时可能重复压缩，结果相同，不加锁
+     */
+    final byte[] compressed(ContentEncoding encoding) {
+        byte[] bytes = encoding == ContentEncoding.GZIP ? gzip : deflate;
+        if (bytes == null) {
+            bytes = Compression.compress(body, encoding);
+            if (encoding == ContentEncoding.GZIP) {
+                gzip = bytes;
+            } else {
+                deflate = bytes;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,154 @@
+package com.fantj.mvc.framework.servlet;
+
+/**
+* gzip/zlib 尾部校验和的分段计算
+* java.util.zip.CRC32/Adler32 不能从任意初值继续计算，也不能合并两段的结果，
+* 预压缩模板需要把 字面量（预先算好的校验和）与 动态值 拼起来，所以这里按 zlib 的算法实现
+* @author JiaoFanTing
+**/
+final class Checksums {
+
+    private static final int CRC32_POLYNOMIAL = 0xedb88320;
+    private static final int[] CRC32_TABLE = new int[256];
+    private static final int ADLER_BASE = 65521;
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? CRC32_POLYNOMIAL ^ (c >>> 1) : c >>> 1;
+            }
+            CRC32_TABLE[n] = c;
+        }
+    }
+
+    private Checksums() {
+    }
+
+    /**
+     * 从 crc（上一段的结果，首段为 0）继续计算
+     */
+    static int crc32(int crc, byte[] bytes, int offset, int length) {
+        crc = ~crc;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc = CRC32_TABLE[(crc ^ bytes[i]) & 0xff] ^ (crc >>> 8);
+        }
+        return ~crc;
+    }
+
+    /**
+     * 生成 "在 crc 之后追加 length 个字节" 的 GF(2) 线性变换，合并时只需一次 32x32 的矩阵乘
+     */
+    static int[] crc32Shift(long length) {
+        int[] result = new int[32];
+        for (int n = 0; n < 32; n++) {
+            result[n] = 1 << n;
+        }
+        if (length <= 0) {
+            return result;
+        }
+        // 一个 0 比特的变换
+        int[] odd = new int[32];
+        int[] even = new int[32];
+        odd[0] = CRC32_POLYNOMIAL;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // 2 个、4 个 0 比特
+        square(even, odd);
+        square(odd, even);
+        // 之后每次平方得到 1、2、4... 个 0 字节
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                multiply(result, even);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                multiply(result, odd);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return result;
+    }
+
+    /**
+     * crc32(A + B) = shift(crc32(A)) ^ crc32(B)，shift 为 B 的长度对应的变换
+     */
+    static int crc32Combine(int crc1, int crc2, int[] shift) {
+        return times(shift, crc1) ^ crc2;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    /**
+     * result = matrix * result
+     */
+    private static void multiply(int[] result, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            result[n] = times(matrix, result[n]);
+        }
+    }
+
+    /**
+     * 从 adler（首段为 1）继续计算
+     */
+    static int adler32(int adler, byte[] bytes, int offset, int length) {
+        long a = adler & 0xffff;
+        long b = (adler >>> 16) & 0xffff;
+        int i = offset;
+        int end = offset + length;
+        while (i < end) {
+            // 5552 是 b 不溢出前能累加的最多字节数
+            int chunkEnd = Math.min(end, i + 5552);
+            for (; i < chunkEnd; i++) {
+                a += bytes[i] & 0xff;
+                b += a;
+            }
+            a %= ADLER_BASE;
+            b %= ADLER_BASE;
+        }
+        return (int) (b << 16 | a);
+    }
+
+    static int adler32Combine(int adler1, int adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ((long) ADLER_BASE << 1)) {
+            sum2 -= ((long) ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return (int) (sum1 | (sum2 << 16));
+    }
+}
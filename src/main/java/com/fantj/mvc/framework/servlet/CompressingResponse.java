@@ -0,0 +1,359 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+
+/**
+* 压缩响应 -- 客户端接受压缩时包装 response
+* 先缓冲输出，超过阈值才开始压缩；请求结束时仍不足阈值的内容原样输出并带上 Content-Length
+* 已经压缩好的内容（缓存的响应、预压缩的模板）通过 {@link #startEncoded()} 直接写到底层流
+* @author JiaoFanTing
+**/
+final class CompressingResponse extends HttpServletResponseWrapper {
+
+    static final String VARY = "Vary";
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ContentEncoding encoding;
+    private final int threshold;
+    private CompressingStream stream;
+    private PrintWriter writer;
+    /**
+     * 已开始输出压缩数据，或者内容已由调用方压缩好
+     */
+    private boolean encoded;
+    /**
+     * 响应不再压缩，如 sendError 交给容器输出的错误页
+     */
+    private boolean bypass;
+    /**
+     * 通过本包装设置的 ETag，真正开始压缩输出时才加上编码后缀
+     */
+    private String etag;
+
+    CompressingResponse(HttpServletResponse response, ContentEncoding encoding, int threshold) {
+        super(response);
+        this.encoding = encoding;
+        this.threshold = threshold;
+        // 同一个 url 的响应随 Accept-Encoding 变化，告知中间缓存
+        response.addHeader(VARY, ContentEncoding.ACCEPT_ENCODING);
+    }
+
+    ContentEncoding encoding() {
+        return encoding;
+    }
+
+    /**
+     * 长度为 length 的内容是否值得压缩
+     */
+    boolean accepts(long length) {
+        return !bypass && length >= threshold;
+    }
+
+    /**
+     * 调用方自己输出压缩数据：设置 Content-Encoding 并返回底层流
+     * 已经通过本包装输出过内容时返回 null，调用方应改为普通输出
+     */
+    OutputStream startEncoded() throws IOException {
+        if (stream != null || writer != null || bypass) {
+            return null;
+        }
+        markEncoded();
+        return getResponse().getOutputStream();
+    }
+
+    /**
+     * 输出已经压缩好的完整内容，返回 false 表示已经通过本包装输出过内容
+     */
+    boolean writeEncoded(byte[] encoded) throws IOException {
+        OutputStream out = startEncoded();
+        if (out == null) {
+            return false;
+        }
+        getResponse().setContentLength(encoded.length);
+        out.write(encoded);
+        return true;
+    }
+
+    private void markEncoded() {
+        encoded = true;
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        response.setHeader(ContentEncoding.CONTENT_ENCODING, encoding.token);
+        if (etag != null) {
+            response.setHeader(ETag.HEADER, ETag.withEncoding(etag, encoding));
+        }
+    }
+
+    /**
+     * 压缩与不压缩是两种表示，强 ETag 需要区分；只有实际压缩输出的响应才带上编码后缀，
+     * 不足阈值原样输出的响应保留原始 ETag
+     */
+    @Override
+    public void setHeader(String name, String value) {
+        super.setHeader(name, tagged(name, value));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        super.addHeader(name, tagged(name, value));
+    }
+
+    private String tagged(String name, String value) {
+        if (value == null || !ETag.HEADER.equalsIgnoreCase(name)) {
+            return value;
+        }
+        etag = value;
+        return encoded ? ETag.withEncoding(value, encoding) : value;
+    }
+
+    /**
+     * 压缩前的长度没有意义，不压缩时在 finish 中按实际输出设置；不再压缩后原样交给底层
+     */
+    @Override
+    public void setContentLength(int len) {
+        if (bypass) {
+            super.setContentLength(len);
+        }
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (bypass) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        bypass = true;
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        bypass = true;
+        super.sendError(sc);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (encoded && stream == null || bypass) {
+            return getResponse().getOutputStream();
+        }
+        if (stream == null) {
+            stream = new CompressingStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer != null) {
+            return writer;
+        }
+        if (stream != null) {
+            throw new IllegalStateException("getOutputStream() has already been called");
+        }
+        if (encoded || bypass) {
+            return getResponse().getWriter();
+        }
+        stream = new CompressingStream();
+        writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(getCharacterEncoding())));
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        resetStream();
+        ((HttpServletResponse) getResponse()).addHeader(VARY, ContentEncoding.ACCEPT_ENCODING);
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        resetStream();
+    }
+
+    private void resetStream() {
+        if (stream != null && stream.deflater != null) {
+            throw new IllegalStateException("Response has already been committed");
+        }
+        if (stream != null) {
+            stream.count = 0;
+        }
+    }
+
+    /**
+     * 结束响应：写出剩余的压缩数据或缓冲的内容，请求处理完成后调用
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.finish();
+        }
+    }
+
+    /**
+     * 先缓冲，超过阈值后改为压缩输出
+     */
+    private final class CompressingStream extends ServletOutputStream {
+
+        private byte[] buffer;
+        private int count;
+        private Deflater deflater;
+        private int checksum = encoding.initialChecksum;
+        private long length;
+        private boolean finished;
+        /**
+         * 注册了 WriteListener 后不再压缩，直接写到底层流
+         */
+        private ServletOutputStream direct;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (direct != null) {
+                direct.write(b, off, len);
+                return;
+            }
+            if (finished) {
+                throw new IOException("Response has already been finished");
+            }
+            if (len == 0) {
+                return;
+            }
+            if (deflater == null) {
+                if (count + len < threshold) {
+                    if (buffer == null) {
+                        buffer = new byte[threshold];
+                    }
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                start();
+            }
+            checksum = encoding.update(checksum, b, off, len);
+            length += len;
+            Compression.deflate(deflater, b, off, len, Deflater.NO_FLUSH, getResponse().getOutputStream());
+        }
+
+        /**
+         * 达到阈值，写出头部和已缓冲的内容
+         */
+        private void start() throws IOException {
+            markEncoded();
+            deflater = Compression.borrow();
+            encoding.writeHeader(getResponse().getOutputStream());
+            if (count > 0) {
+                int buffered = count;
+                count = 0;
+                checksum = encoding.update(checksum, buffer, 0, buffered);
+                length += buffered;
+                Compression.deflate(deflater, buffer, 0, buffered, Deflater.NO_FLUSH, getResponse().getOutputStream());
+            }
+        }
+
+        /**
+         * 只有已经开始压缩时才真正刷新，缓冲中的内容还要等待是否达到阈值
+         */
+        @Override
+        public void flush() throws IOException {
+            if (direct != null) {
+                direct.flush();
+                return;
+            }
+            if (deflater != null && !finished) {
+                Compression.deflate(deflater, EMPTY, 0, 0, Deflater.SYNC_FLUSH, getResponse().getOutputStream());
+                getResponse().getOutputStream().flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished || direct != null) {
+                return;
+            }
+            finished = true;
+            OutputStream out = getResponse().getOutputStream();
+            if (deflater == null) {
+                if (count > 0) {
+                    getResponse().setContentLength(count);
+                    out.write(buffer, 0, count);
+                }
+                return;
+            }
+            try {
+                Compression.finish(deflater, out);
+                encoding.writeTrailer(out, checksum, length);
+            } finally {
+                Compression.release(deflater);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (direct != null) {
+                direct.close();
+                return;
+            }
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return direct == null || direct.isReady();
+        }
+
+        /**
+         * 非阻塞输出无法与压缩配合：还没开始压缩时改为不压缩，缓冲的内容先写出，之后的输出直接交给底层流
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (deflater != null) {
+                throw new IllegalStateException("Compressed output has already started");
+            }
+            try {
+                ServletOutputStream out = getResponse().getOutputStream();
+                bypass = true;
+                if (count > 0) {
+                    out.write(buffer, 0, count);
+                    count = 0;
+                }
+                direct = out;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            direct.setWriteListener(writeListener);
+        }
+    }
+}
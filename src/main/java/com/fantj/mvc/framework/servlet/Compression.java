@@ -0,0 +1,117 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+* 压缩工具 -- Deflater 池与原始 DEFLATE 块的输出
+* Deflater 持有本地内存，每次 new/end 代价较高，用完 reset 后放回池中；池满时直接释放
+* @author JiaoFanTing
+**/
+final class Compression {
+
+    /**
+     * 池中最多保留的空闲 Deflater
+     */
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final ArrayBlockingQueue<Deflater> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    /**
+     * 压缩输出缓冲区，每个线程复用一个
+     */
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+    /**
+     * 最后一个空的 stored 块（BFINAL=1），用于结束由多个非最终块拼成的 DEFLATE 流
+     */
+    private static final byte[] FINAL_BLOCK = {0x01, 0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    private Compression() {
+    }
+
+    /**
+     * 从池中取一个 Deflater，只输出原始 DEFLATE 数据，头尾由 {@link ContentEncoding} 负责
+     */
+    static Deflater borrow() {
+        Deflater deflater = POOL.poll();
+        return deflater == null ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : deflater;
+    }
+
+    static void release(Deflater deflater) {
+        deflater.reset();
+        if (!POOL.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 把 input 交给 deflater 并写出已产生的压缩数据
+     * @param flush Deflater.NO_FLUSH / SYNC_FLUSH
+     */
+    static void deflate(Deflater deflater, byte[] input, int offset, int length, int flush, OutputStream out) throws IOException {
+        deflater.setInput(input, offset, length);
+        byte[] buffer = BUFFER.get();
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length, flush);
+            if (n > 0) {
+                out.write(buffer, 0, n);
+            }
+            // SYNC_FLUSH 时输出填满缓冲区说明可能还有剩余
+        } while (!deflater.needsInput() || n == buffer.length);
+    }
+
+    /**
+     * 结束 deflater 并写出剩余数据
+     */
+    static void finish(Deflater deflater, OutputStream out) throws IOException {
+        deflater.finish();
+        byte[] buffer = BUFFER.get();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            if (n > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /**
+     * 把一段内容压缩成独立的、按字节对齐的非最终块：不引用之前的数据，可以与其他这样的块直接拼接
+     */
+    static byte[] deflateBlocks(byte[] input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+        Deflater deflater = borrow();
+        try {
+            deflate(deflater, input, 0, input.length, Deflater.SYNC_FLUSH, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            release(deflater);
+        }
+        return out.toByteArray();
+    }
+
+    static void writeFinalBlock(OutputStream out) throws IOException {
+        out.write(FINAL_BLOCK);
+    }
+
+    /**
+     * 压缩整段内容，用于缓存的响应
+     */
+    static byte[] compress(byte[] body, ContentEncoding encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+        Deflater deflater = borrow();
+        try {
+            encoding.writeHeader(out);
+            deflate(deflater, body, 0, body.length, Deflater.NO_FLUSH, out);
+            finish(deflater, out);
+            encoding.writeTrailer(out, encoding.update(encoding.initialChecksum, body, 0, body.length), body.length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            release(deflater);
+        }
+        return out.toByteArray();
+    }
+}
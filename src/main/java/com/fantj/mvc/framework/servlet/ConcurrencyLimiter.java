@@ -0,0 +1,44 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* 固定上限的并发计数 -- 用于 @ConcurrencyLimit 的路由，获取失败时立即返回，不阻塞
+* @author JiaoFanTing
+**/
+final class ConcurrencyLimiter {
+
+    private final int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    ConcurrencyLimiter(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("并发上限必须大于 0: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
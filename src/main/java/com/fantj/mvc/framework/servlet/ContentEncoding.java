@@ -0,0 +1,118 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+* 响应压缩格式 -- 两者都是 DEFLATE 数据，区别只在头部和尾部的校验和
+* gzip 使用 CRC32，deflate（即 zlib 格式）使用 Adler32
+* @author JiaoFanTing
+**/
+enum ContentEncoding {
+
+    GZIP("gzip", new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff}, 0) {
+        @Override
+        int update(int checksum, byte[] bytes, int offset, int length) {
+            return Checksums.crc32(checksum, bytes, offset, length);
+        }
+
+        @Override
+        void writeTrailer(OutputStream out, int checksum, long length) throws IOException {
+            writeIntLE(out, checksum);
+            writeIntLE(out, (int) length);
+        }
+    },
+    DEFLATE("deflate", new byte[]{0x78, (byte) 0x9c}, 1) {
+        @Override
+        int update(int checksum, byte[] bytes, int offset, int length) {
+            return Checksums.adler32(checksum, bytes, offset, length);
+        }
+
+        @Override
+        void writeTrailer(OutputStream out, int checksum, long length) throws IOException {
+            out.write(checksum >>> 24);
+            out.write(checksum >>> 16);
+            out.write(checksum >>> 8);
+            out.write(checksum);
+        }
+    };
+
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+
+    /**
+     * Content-Encoding 的取值
+     */
+    final String token;
+    private final byte[] header;
+    /**
+     * 空内容的校验和
+     */
+    final int initialChecksum;
+
+    ContentEncoding(String token, byte[] header, int initialChecksum) {
+        this.token = token;
+        this.header = header;
+        this.initialChecksum = initialChecksum;
+    }
+
+    /**
+     * 从 checksum 继续计算
+     */
+    abstract int update(int checksum, byte[] bytes, int offset, int length);
+
+    abstract void writeTrailer(OutputStream out, int checksum, long length) throws IOException;
+
+    void writeHeader(OutputStream out) throws IOException {
+        out.write(header);
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * 按 Accept-Encoding 选择压缩格式，优先 gzip；q=0 表示不接受，客户端都不接受时返回 null
+     */
+    static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        // * 只对没有单独列出的格式生效
+        Boolean any = null;
+        Boolean gzipListed = null;
+        Boolean deflateListed = null;
+        for (String item : acceptEncoding.split(",")) {
+            int semicolon = item.indexOf(';');
+            String coding = (semicolon < 0 ? item : item.substring(0, semicolon)).trim();
+            boolean accepted = semicolon < 0 || quality(item.substring(semicolon + 1)) > 0;
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                gzipListed = accepted;
+            } else if (coding.equalsIgnoreCase("deflate")) {
+                deflateListed = accepted;
+            } else if (coding.equals("*")) {
+                any = accepted;
+            }
+        }
+        boolean gzip = gzipListed != null ? gzipListed : any != null && any;
+        boolean deflate = deflateListed != null ? deflateListed : any != null && any;
+        return gzip ? GZIP : deflate ? DEFLATE : null;
+    }
+
+    private static double quality(String params) {
+        for (String param : params.split(";")) {
+            param = param.trim();
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,37 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+* 默认异常解析器 -- 位于解析链末尾
+* ResponseStatusException 按其状态码响应，只有 5xx 记录日志；其余异常响应 500 并异步记录，响应体不含调用栈
+* @author JiaoFanTing
+**/
+final class DefaultExceptionResolver implements ExceptionResolver {
+
+    private final ErrorLog errorLog;
+
+    DefaultExceptionResolver(ErrorLog errorLog) {
+        this.errorLog = errorLog;
+    }
+
+    @Override
+    public boolean resolve(HttpServletRequest req, HttpServletResponse resp, Throwable ex) throws IOException {
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        byte[] body = null;
+        if (ex instanceof ResponseStatusException) {
+            status = ((ResponseStatusException) ex).getStatus();
+            // 4xx 的原因返回给客户端，5xx 的原因只进日志
+            if (status < 500 && ex.getMessage() != null) {
+                body = (status + " " + ex.getMessage()).getBytes(Template.CHARSET);
+            }
+        }
+        if (status >= 500) {
+            errorLog.log(req.getMethod() + " " + req.getRequestURI() + " -> " + status, ex);
+        }
+        ErrorResponses.write(resp, status, body == null ? ErrorResponses.bodyOf(status) : body);
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+* 请求处理中的临时对象池 -- 参数数组、字符串拼接与编码缓冲区，每个平台线程复用一份
+* 参数数组在 handler 调用期间占用，调用后清空归还；其余缓冲区只在不回调业务代码的地方短暂使用
+* 虚拟线程每个任务一个，ThreadLocal 起不到复用作用，在虚拟线程上每次返回新的实例（缓冲区按需分配）
+* @author JiaoFanTing
+**/
+final class DispatchBuffers {
+
+    /**
+     * 超过该个数的参数数组不复用
+     */
+    private static final int MAX_POOLED_ARGUMENTS = 8;
+    /**
+     * 超过该容量的缓冲区用完后丢弃，避免大页面长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    private static final byte[] HEX = "0123456789abcdef".getBytes(Template.CHARSET);
+
+    private static final ThreadLocal<DispatchBuffers> BUFFERS = ThreadLocal.withInitial(DispatchBuffers::new);
+    /**
+     * Thread.isVirtual()，JDK 21 以下为 null
+     */
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    /**
+     * 按参数个数下标存放的参数数组
+     */
+    private final Object[][] arguments = new Object[MAX_POOLED_ARGUMENTS + 1][];
+    private boolean argumentsInUse;
+    private StringBuilder text;
+    private byte[] bytes;
+    private char[] chars;
+
+    private DispatchBuffers() {
+    }
+
+    /**
+     * 当前线程的缓冲区
+     */
+    static DispatchBuffers current() {
+        return isVirtual(Thread.currentThread()) ? new DispatchBuffers() : BUFFERS.get();
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * 取一个长度为 length 的参数数组，用完后必须调用 {@link #releaseArguments(Object[])}
+     * 嵌套的请求处理（如 include）在外层占用期间拿到新分配的数组
+     */
+    Object[] arguments(int length) {
+        if (length == 0) {
+            return NO_ARGUMENTS;
+        }
+        if (length > MAX_POOLED_ARGUMENTS || argumentsInUse) {
+            return new Object[length];
+        }
+        Object[] array = arguments[length];
+        if (array == null) {
+            array = new Object[length];
+            arguments[length] = array;
+        }
+        argumentsInUse = true;
+        return array;
+    }
+
+    /**
+     * 归还参数数组并清空，不再持有本次请求的对象
+     */
+    void releaseArguments(Object[] array) {
+        if (array.length == 0 || array.length > MAX_POOLED_ARGUMENTS || arguments[array.length] != array) {
+            return;
+        }
+        Arrays.fill(array, null);
+        argumentsInUse = false;
+    }
+
+    /**
+     * 清空后的 StringBuilder，调用方在下一次调用前用完
+     */
+    StringBuilder text() {
+        StringBuilder text = this.text;
+        if (text == null || text.capacity() > MAX_RETAINED_CAPACITY) {
+            text = new StringBuilder(256);
+            this.text = text;
+        }
+        text.setLength(0);
+        return text;
+    }
+
+    /**
+     * 把 value 按 UTF-8 编码到内部缓冲区，返回字节数，内容通过 {@link #bytes()} 读取
+     */
+    int encode(CharSequence value) {
+        int length = value.length();
+        // UTF-8 每个 char 最多 3 个字节
+        byte[] buffer = bytes(length * 3);
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理项，与 String.getBytes 一致
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 把 value 的十进制形式编码到内部缓冲区，返回字节数
+     */
+    int encode(long value) {
+        if (value == Long.MIN_VALUE) {
+            return encode(String.valueOf(value));
+        }
+        byte[] buffer = bytes(20);
+        int position = 0;
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position;
+        for (long rest = value; rest >= 10; rest /= 10) {
+            end++;
+        }
+        end++;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * 最近一次 encode 的结果
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    private byte[] bytes(int capacity) {
+        byte[] bytes = this.bytes;
+        if (bytes == null || bytes.length < capacity || bytes.length > MAX_RETAINED_CAPACITY) {
+            bytes = new byte[Math.max(capacity, 256)];
+            this.bytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * 带引号的 16 位十六进制字符串，用于 ETag，只分配结果字符串
+     */
+    String quotedHex(long value) {
+        char[] chars = this.chars;
+        if (chars == null) {
+            chars = new char[18];
+            this.chars = chars;
+        }
+        int position = chars.length;
+        chars[--position] = '"';
+        do {
+            chars[--position] = (char) HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        } while (value != 0);
+        chars[--position] = '"';
+        return new String(chars, position, chars.length - position);
+    }
+}
@@ -1,23 +1,49 @@
 package com.fantj.mvc.framework.servlet;
 
+import com.fantj.mvc.framework.annotation.Cacheable;
+import com.fantj.mvc.framework.annotation.ConcurrencyLimit;
 import com.fantj.mvc.framework.annotation.Controller;
 import com.fantj.mvc.framework.annotation.RequestMapping;
-import com.fantj.mvc.framework.annotation.RequestParam;
+import com.fantj.mvc.framework.annotation.ResponseBody;
+import com.fantj.mvc.framework.annotation.VirtualThread;
 import com.fantj.mvc.framework.context.ApplicationContext;
+import com.fantj.mvc.framework.context.RequestScope;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.lang.annotation.Annotation;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 /**
@@ -26,21 +52,102 @@ import java.util.regex.Pattern;
 **/
 public class DispatcherServlet extends HttpServlet {
 
-    private static final String LOCATION = "contextConfigLocation";
+    static final String LOCATION = "contextConfigLocation";
+    /**
+     * 批量请求中携带子请求的参数名，每个值是一个带查询字符串的路径
+     */
+    static final String BATCH_PARAMETER = "req";
+    /**
+     * 存放当前请求 request bean 的请求属性
+     */
+    static final String REQUEST_SCOPE = DispatcherServlet.class.getName() + ".REQUEST_SCOPE";
 
     /**
      * 存放 Handler集合
      */
     private List<Handler> handlerMapping = new ArrayList<>();
 
+    /**
+     * url 路由索引，在 initHandlerMapping 时构建
+     */
+    private RouteTrie<Handler> routeIndex = new RouteTrie<>();
+
     /**
      * 存放 Handler HandlerAdapter 集合
      */
     private Map<Handler, HandlerAdapter> adapterMapping= new HashMap<>();
     /**
-     * 存放视图
+     * 视图索引
+     */
+    private ViewRegistry viewRegistry;
+    /**
+     * 静态资源，未配置 staticRoot 时为 null
+     */
+    private StaticResources staticResources;
+    /**
+     * @Cacheable handler 的响应缓存
+     */
+    private ResponseCache responseCache;
+    /**
+     * IOC 容器载入的配置
+     */
+    private Properties config;
+    /**
+     * 内部统计端点的 url，未配置时不开放
+     */
+    private String metricsEndpoint;
+    /**
+     * 批量请求端点的 url，未配置时不开放
+     */
+    private String batchEndpoint;
+    /**
+     * 一个批量请求最多的子请求数
+     */
+    private int batchMaxSize;
+    /**
+     * 并行执行子请求的线程池，按顺序执行时为 null
+     */
+    private ExecutorService batchExecutor;
+    /**
+     * 全局准入控制，未开启时为 null
+     */
+    private AdmissionLimiter admissionLimiter;
+    /**
+     * 拒绝请求时 Retry-After 的秒数
      */
-    private List<ViewResolver> viewResolvers = new ArrayList<>();
+    private String retryAfter;
+    /**
+     * 已注册到 JMX 的 MBean
+     */
+    private List<ObjectName> registeredMBeans = new ArrayList<>();
+    /**
+     * 异步 handler 完成后渲染视图的线程池
+     */
+    private ExecutorService asyncExecutor;
+    /**
+     * 异步请求超时时间（毫秒）
+     */
+    private long asyncTimeout;
+    /**
+     * @VirtualThread handler 的执行器，没有这类 handler 时为 null
+     */
+    private VirtualThreadExecutor virtualExecutor;
+    /**
+     * 是否按 Accept-Encoding 压缩响应
+     */
+    private boolean compression;
+    /**
+     * 小于该字节数的响应不压缩
+     */
+    private int compressionThreshold;
+    /**
+     * 异常解析链，最后一个是默认解析器
+     */
+    private ExceptionResolver[] exceptionResolvers = {};
+    /**
+     * 限流的异步错误日志
+     */
+    private ErrorLog errorLog;
 
 
     /**
@@ -49,6 +156,7 @@ public class DispatcherServlet extends HttpServlet {
     @Override
     public void init(ServletConfig config) throws ServletException {
         ApplicationContext context = new ApplicationContext(config.getInitParameter(LOCATION));
+        this.config = context.getConfig();
 
         // 解析 url 和 method
         initHandlerMapping(context);
@@ -56,15 +164,245 @@ public class DispatcherServlet extends HttpServlet {
         initHandlerAdapters(context);
         // 初始化视图解析器
         initViewResolvers(context);
+        // 静态资源
+        initStaticResources(context);
+        // 响应缓存，放到 ServletContext 中以便业务代码主动清除
+        responseCache = new ResponseCache(Integer.parseInt(context.getConfig().getProperty("responseCacheSize", "1024")));
+        config.getServletContext().setAttribute(ResponseCache.class.getName(), responseCache);
+        // 模板热加载
+        initTemplateWatcher(context);
+        // 准入控制
+        initAdmissionControl(context);
+        // 路由统计
+        metricsEndpoint = context.getConfig().getProperty("metricsEndpoint");
+        registerMetrics();
+        // 异步处理
+        initAsyncExecutor(context);
+        initVirtualThreadExecutor(context);
+        // 响应压缩
+        compression = Boolean.parseBoolean(context.getConfig().getProperty("compression", "true"));
+        compressionThreshold = Integer.parseInt(context.getConfig().getProperty("compressionThreshold", "1024"));
+        // 异常处理，错误日志放到 ServletContext 中供容器共用
+        initExceptionResolvers(context);
+        config.getServletContext().setAttribute(ErrorLog.class.getName(), errorLog);
+        // 批量请求
+        initBatch(context);
+
+    }
+
+    /**
+     * 全局自适应并发上限，超出时直接响应 503
+     */
+    private void initAdmissionControl(ApplicationContext context) {
+        Properties properties = context.getConfig();
+        retryAfter = properties.getProperty("admissionRetryAfter", "1");
+        if (!Boolean.parseBoolean(properties.getProperty("admissionControl", "false"))){
+            return;
+        }
+        admissionLimiter = new AdmissionLimiter(properties.getProperty("admissionAlgorithm", AdmissionLimiter.GRADIENT),
+                Integer.parseInt(properties.getProperty("admissionInitialLimit", "100")),
+                Integer.parseInt(properties.getProperty("admissionMinLimit", "10")),
+                Integer.parseInt(properties.getProperty("admissionMaxLimit", "1000")),
+                Long.parseLong(properties.getProperty("admissionWindow", "100")));
+        System.out.println("AdmissionControl: " + admissionLimiter.getAlgorithm() + " limit=" + admissionLimiter.getLimit());
+    }
+
+    /**
+     * 把每个路由的统计信息注册到 JMX
+     */
+    private void registerMetrics() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (admissionLimiter != null){
+            try {
+                ObjectName name = new ObjectName("com.fantj.mvc:type=AdmissionLimiter");
+                if (server.isRegistered(name)){
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(admissionLimiter, name);
+                registeredMBeans.add(name);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        for (Handler handler: handlerMapping){
+            try {
+                ObjectName name = new ObjectName("com.fantj.mvc:type=RouteMetrics,name=" + ObjectName.quote(handler.mapping));
+                if (server.isRegistered(name)){
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(handler.metrics, name);
+                registeredMBeans.add(name);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * IOC 容器中的 ExceptionResolver 按 bean 名顺序排在前面，默认解析器兜底
+     */
+    private void initExceptionResolvers(ApplicationContext context) {
+        Properties properties = context.getConfig();
+        ResponseStatusException.setCaptureStackTrace(Boolean.parseBoolean(properties.getProperty("controlFlowStackTrace", "false")));
+        errorLog = new ErrorLog(Integer.parseInt(properties.getProperty("errorLogRate", "10")),
+                Integer.parseInt(properties.getProperty("errorLogQueueSize", "256")));
+        List<ExceptionResolver> resolvers = new ArrayList<>();
+        // 按 bean 名排序；有多个名字的 bean 只按最小的名字加入一次
+        Set<Class<?>> added = new HashSet<>();
+        for (Map.Entry<String, Class<?>> entry : new TreeMap<>(context.getBeanTypes()).entrySet()) {
+            if (ExceptionResolver.class.isAssignableFrom(entry.getValue()) && added.add(entry.getValue())) {
+                resolvers.add((ExceptionResolver) context.getBean(entry.getKey()));
+            }
+        }
+        resolvers.add(new DefaultExceptionResolver(errorLog));
+        exceptionResolvers = resolvers.toArray(new ExceptionResolver[0]);
+        System.out.println("ExceptionResolvers: " + exceptionResolvers.length);
+    }
+
+    /**
+     * 批量请求端点：子请求数上限与并行执行的线程池，线程数为 1 时按顺序执行
+     */
+    private void initBatch(ApplicationContext context) {
+        Properties properties = context.getConfig();
+        batchEndpoint = properties.getProperty("batchEndpoint");
+        if (batchEndpoint == null){
+            return;
+        }
+        batchMaxSize = Integer.parseInt(properties.getProperty("batchMaxSize", "20"));
+        int poolSize = Integer.parseInt(properties.getProperty("batchPoolSize",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        if (poolSize <= 1){
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        // 队列满时由请求线程自己执行子请求
+        batchExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize * batchMaxSize), r -> {
+            Thread thread = new Thread(r, "mvc-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void initAsyncExecutor(ApplicationContext context) {
+        Properties properties = context.getConfig();
+        asyncTimeout = Long.parseLong(properties.getProperty("asyncTimeout", "30000"));
+        int poolSize = Integer.parseInt(properties.getProperty("asyncPoolSize",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        AtomicInteger threadNumber = new AtomicInteger();
+        asyncExecutor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread thread = new Thread(r, "mvc-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void initVirtualThreadExecutor(ApplicationContext context) {
+        boolean used = false;
+        for (Handler handler: handlerMapping){
+            used |= handler.virtual;
+        }
+        if (!used){
+            return;
+        }
+        Properties properties = context.getConfig();
+        virtualExecutor = new VirtualThreadExecutor(
+                Integer.parseInt(properties.getProperty("virtualThreadFallbackPoolSize", "200")),
+                Integer.parseInt(properties.getProperty("virtualThreadFallbackQueueSize", "1000")),
+                Long.parseLong(properties.getProperty("virtualThreadPinnedThreshold", "20")));
+        System.out.println("VirtualThread: " + (virtualExecutor.isVirtual() ? "virtual threads" : "platform thread pool"));
+        try {
+            ObjectName name = new ObjectName("com.fantj.mvc:type=VirtualThreadExecutor");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)){
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(virtualExecutor, name);
+            registeredMBeans.add(name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (asyncExecutor != null){
+            asyncExecutor.shutdown();
+        }
+        if (virtualExecutor != null){
+            virtualExecutor.shutdown();
+        }
+        if (batchExecutor != null){
+            batchExecutor.shutdown();
+        }
+        if (viewRegistry != null){
+            try {
+                viewRegistry.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name: registeredMBeans){
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        registeredMBeans.clear();
+        if (errorLog != null){
+            errorLog.close();
+        }
+    }
 
+    /**
+     * 获取响应缓存
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * 获取 application.properties 中的配置
+     */
+    public Properties getConfig() {
+        return config;
     }
 
-    private void initViewResolvers(ApplicationContext context) {
+    private void initViewResolvers(ApplicationContext context) throws ServletException {
         String templateRoot = context.getConfig().getProperty("templateRoot");
-        String path = Objects.requireNonNull(this.getClass().getClassLoader().getResource(templateRoot)).getFile();
-        File file = new File(path);
-        for (File template: Objects.requireNonNull(file.listFiles())){
-            viewResolvers.add(new ViewResolver(template.getName(), template));
+        try {
+            viewRegistry = new ViewRegistry(this.getClass().getClassLoader(), templateRoot);
+        } catch (IOException e) {
+            throw new ServletException("模板编译失败: " + templateRoot, e);
+        }
+        System.out.println("Templates: " + viewRegistry.size());
+    }
+
+    /**
+     * 把 staticPath 前缀下的请求映射到 staticRoot 目录中的文件
+     */
+    private void initStaticResources(ApplicationContext context) {
+        Properties properties = context.getConfig();
+        String staticRoot = properties.getProperty("staticRoot");
+        if (staticRoot == null || staticRoot.trim().isEmpty()){
+            return;
+        }
+        staticResources = new StaticResources(this.getClass().getClassLoader(),
+                properties.getProperty("staticPath", "/static/"), staticRoot,
+                Long.parseLong(properties.getProperty("staticCacheSize", String.valueOf(16 * 1024 * 1024))),
+                Integer.parseInt(properties.getProperty("staticCacheFileSize", String.valueOf(64 * 1024))));
+        System.out.println("Static: " + staticResources.getPrefix() + " -> " + staticResources.getRoots());
+    }
+
+    /**
+     * 监听模板目录，文件变化时重新编译并替换视图
+     */
+    private void initTemplateWatcher(ApplicationContext context) {
+        if (Boolean.parseBoolean(context.getConfig().getProperty("templateReload", "true"))){
+            // 缓存的响应可能是旧模板渲染的
+            viewRegistry.watch(responseCache::invalidateAll);
         }
     }
 
@@ -75,53 +413,621 @@ public class DispatcherServlet extends HttpServlet {
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp = compressible(req, resp);
         try {
             doDispatch(req, resp);
         }catch (Exception e){
-            resp.getWriter().write("500 Exception, Msg: "+ Arrays.toString(e.getStackTrace()));
+            resolveException(req, resp, e);
+        }
+        // 异步请求在完成时结束响应
+        if (!req.isAsyncSupported() || !req.isAsyncStarted()){
+            finishResponse(resp);
         }
     }
-    
+
+    /**
+     * 客户端接受压缩时包装 response，之后的视图、json 和错误输出都经过它
+     */
+    private HttpServletResponse compressible(HttpServletRequest req, HttpServletResponse resp) {
+        if (!compression){
+            return resp;
+        }
+        ContentEncoding encoding = ContentEncoding.negotiate(req.getHeader(ContentEncoding.ACCEPT_ENCODING));
+        return encoding == null ? resp : new CompressingResponse(resp, encoding, compressionThreshold);
+    }
+
+    /**
+     * 写出压缩响应中剩余的数据
+     */
+    private void finishResponse(HttpServletResponse resp) throws IOException {
+        if (resp instanceof CompressingResponse){
+            ((CompressingResponse) resp).finish();
+        }
+    }
+
+    /**
+     * 按解析链处理异常，解析器自身出错时记录后交给下一个
+     */
+    private void resolveException(HttpServletRequest req, HttpServletResponse resp, Throwable e) {
+        for (ExceptionResolver resolver: exceptionResolvers){
+            try {
+                if (resolver.resolve(req, resp, e)){
+                    return;
+                }
+            } catch (Exception resolveError) {
+                errorLog.log("ExceptionResolver 失败: " + resolver.getClass().getName(), resolveError);
+            }
+        }
+    }
+
 
     private void doDispatch(HttpServletRequest req, HttpServletResponse resp) {
+        long start = System.nanoTime();
+        // 已准入的 handler，请求结束时释放并发计数
+        Handler admitted = null;
+        boolean failed = true;
+        // 异步处理的请求在完成时再记录统计
+        boolean async = false;
         try {
+            String requestURI = req.getRequestURI();
+            // 内部统计端点
+            if (requestURI.equals(metricsEndpoint)){
+                writeMetrics(resp);
+                failed = false;
+                return;
+            }
+            // 批量请求端点
+            if (requestURI.equals(batchEndpoint)){
+                dispatchBatch(req, resp);
+                failed = false;
+                return;
+            }
+            // 静态资源，文件不存在时继续按 handler 查找
+            if (staticResources != null && staticResources.matches(requestURI) && staticResources.serve(req, resp)){
+                failed = false;
+                return;
+            }
             // 根据url 拿到handler
-            Handler handler = getHandler(req.getRequestURI());
+            Handler handler = getHandler(requestURI);
             if (handler == null){
-                resp.getWriter().write("404 NOT Fount");
+                ErrorResponses.write(resp, HttpServletResponse.SC_NOT_FOUND);
+                failed = false;
+                return;
+            }
+            RouteMetrics metrics = handler.metrics;
+            // 超出路由或全局的并发上限时直接拒绝，不排队
+            if (!admit(handler)){
+                metrics.rejected.increment();
+                rejectOverloaded(resp);
+                failed = false;
+                return;
+            }
+            admitted = handler;
+            long now = System.nanoTime();
+            metrics.lookup.record(now - start);
+            // 可缓存的 handler 优先走缓存；只缓存 GET/HEAD，其他方法的参数可能来自请求体，不在 key 中
+            if (handler.cacheable != null && isSafeMethod(req)){
+                dispatchCacheable(req, resp, handler, now);
+                failed = false;
                 return;
             }
             // 根据handler 获取 adapt 对象
             HandlerAdapter ha = getHandlerAdapter(handler);
-            ModelAndView mv = ha.handle(req, resp, handler);
-            // 模板解析 viewResolver
-            applyViewResolve(resp, mv);
+            // 在虚拟线程上调用 handler 并渲染，参数数组交给了其他线程，不能复用
+            if (handler.virtual){
+                Object[] args = ha.resolveArguments(req, resp, null);
+                now = recordPhase(metrics.binding, now);
+                async = dispatchVirtual(req, resp, handler, ha, args, start, now);
+                failed = false;
+                return;
+            }
+            DispatchBuffers buffers = DispatchBuffers.current();
+            Object[] args = ha.resolveArguments(req, resp, buffers);
+            now = recordPhase(metrics.binding, now);
+            Object result;
+            try {
+                result = ha.invokeRaw(req, handler, args);
+            } finally {
+                buffers.releaseArguments(args);
+            }
+            now = recordPhase(metrics.invocation, now);
+            // 返回 CompletionStage 的 handler 异步完成响应
+            if (handler.returnsAsync){
+                dispatchAsync(req, resp, handler, (CompletionStage<?>) result, start, now, asyncExecutor);
+                async = true;
+                return;
+            }
+            // json 输出或模板解析 viewResolver
+            renderResult(req, resp, handler, result);
+            failed = false;
+            recordPhase(metrics.render, now);
+        } catch (InvocationTargetException e) {
+            resolveException(req, resp, e.getCause());
+        } catch (RuntimeException e) {
+            resolveException(req, resp, e);
+        } catch (IOException e) {
+            // 多为客户端断开，不再响应
+            errorLog.log("写响应失败: " + req.getRequestURI(), e);
+        } finally {
+            if (admitted != null && !async){
+                finishRequest(admitted, start, failed);
+            }
+        }
+    }
 
-        } catch (IOException | IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
+    private static boolean isSafeMethod(HttpServletRequest req) {
+        String method = req.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    /**
+     * 依次获取路由与全局的并发许可，全局拒绝时归还路由的许可
+     */
+    private boolean admit(Handler handler) {
+        ConcurrencyLimiter limiter = handler.limiter;
+        if (limiter != null && !limiter.tryAcquire()){
+            return false;
         }
+        if (admissionLimiter != null && !admissionLimiter.tryAcquire()){
+            if (limiter != null){
+                limiter.release();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 过载时的响应：503 与预编码的响应体，告诉客户端多久后重试
+     */
+    private void rejectOverloaded(HttpServletResponse resp) throws IOException {
+        resp.setHeader("Retry-After", retryAfter);
+        ErrorResponses.write(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
     }
 
-    private void applyViewResolve(HttpServletResponse resp, ModelAndView mv) throws IOException {
-        if (null == mv){
+    /**
+     * 请求结束：记录统计，释放并发许可并把延迟反馈给准入控制
+     */
+    private void finishRequest(Handler handler, long start, boolean failed) {
+        RouteMetrics metrics = handler.metrics;
+        long elapsed = System.nanoTime() - start;
+        metrics.requests.increment();
+        if (failed){
+            metrics.errors.increment();
+        }
+        metrics.total.record(elapsed);
+        if (handler.limiter != null){
+            handler.limiter.release();
+        }
+        if (admissionLimiter != null){
+            admissionLimiter.release(elapsed);
+        }
+    }
+
+    /**
+     * 把 handler 调用提交到 virtualExecutor，返回 false 表示执行器已满，此时直接响应 503
+     */
+    private boolean dispatchVirtual(HttpServletRequest req, HttpServletResponse resp, Handler handler,
+                                    HandlerAdapter ha, Object[] args, long start, long now) throws IOException {
+        CompletableFuture<Object> invocation;
+        try {
+            invocation = CompletableFuture.supplyAsync(() -> {
+                long invokeStart = System.nanoTime();
+                try {
+                    return ha.invokeRaw(req, handler, args);
+                } catch (InvocationTargetException e) {
+                    throw new CompletionException(e.getCause());
+                } finally {
+                    handler.metrics.invocation.record(System.nanoTime() - invokeStart);
+                }
+            }, virtualExecutor);
+        } catch (RejectedExecutionException e) {
+            // 执行器已满，与并发上限一样按过载拒绝，不计为错误
+            handler.metrics.rejected.increment();
+            rejectOverloaded(resp);
+            return false;
+        }
+        CompletionStage<?> stage = invocation;
+        if (handler.returnsAsync){
+            stage = invocation.thenCompose(result -> result == null ? CompletableFuture.<Object>completedFuture(null)
+                    : ((CompletionStage<?>) result).thenApply(value -> (Object) value));
+        }
+        dispatchAsync(req, resp, handler, stage, start, now, virtualExecutor);
+        return true;
+    }
+
+    /**
+     * 异步处理：释放容器线程，CompletionStage 完成后在 executor 上渲染并结束请求
+     * 容器不支持异步时退化为同步等待
+     */
+    private void dispatchAsync(HttpServletRequest req, HttpServletResponse resp, Handler handler,
+                               CompletionStage<?> stage, long start, long now, Executor executor) {
+        if (stage == null){
+            stage = CompletableFuture.completedFuture(null);
+        }
+        if (!req.isAsyncSupported()){
+            Object value = null;
+            Throwable error = null;
+            try {
+                value = stage.toCompletableFuture().join();
+            } catch (CompletionException | CancellationException e) {
+                error = e;
+            }
+            completeAsync(req, resp, handler, value, error, start, now);
             return;
         }
-        if (viewResolvers.isEmpty()){
+        AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(asyncTimeout);
+        // 超时与正常完成只能有一个生效
+        AtomicBoolean done = new AtomicBoolean();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (done.compareAndSet(false, true)){
+                    ((HttpServletResponse) event.getSuppliedResponse()).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    finishRequest(handler, start, true);
+                    asyncContext.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        stage.whenComplete((value, error) -> {
+            Runnable completion = () -> {
+                if (!done.compareAndSet(false, true)){
+                    return;
+                }
+                try {
+                    completeAsync((HttpServletRequest) asyncContext.getRequest(), (HttpServletResponse) asyncContext.getResponse(),
+                            handler, value, error, start, System.nanoTime());
+                } finally {
+                    asyncContext.complete();
+                }
+            };
+            try {
+                executor.execute(completion);
+            } catch (RejectedExecutionException e) {
+                // 执行器已满或已关闭时在完成 stage 的线程上渲染，不能让请求占着许可挂到超时
+                completion.run();
+            }
+        });
+    }
+
+    /**
+     * 异步结果完成后渲染视图或输出异常
+     */
+    private void completeAsync(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object value, Throwable error, long start, long now) {
+        RouteMetrics metrics = handler.metrics;
+        boolean failed = true;
+        try {
+            if (error != null){
+                resolveException(req, resp, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                try {
+                    renderResult(req, resp, handler, value);
+                    failed = false;
+                    recordPhase(metrics.render, now);
+                } catch (RuntimeException e) {
+                    // 渲染失败，如视图不存在
+                    resolveException(req, resp, e);
+                }
+            }
+            finishResponse(resp);
+        } catch (IOException e) {
+            errorLog.log("写响应失败: " + req.getRequestURI(), e);
+        } finally {
+            finishRequest(handler, start, failed);
+        }
+    }
+
+    /**
+     * 记录一个阶段的耗时，返回当前时间作为下一阶段的起点
+     */
+    private long recordPhase(LatencyHistogram histogram, long since) {
+        long now = System.nanoTime();
+        histogram.record(now - since);
+        return now;
+    }
+
+    /**
+     * 处理 @Cacheable handler：命中时直接写缓存的字节，未命中时调用 handler 并缓存渲染结果
+     */
+    private void dispatchCacheable(HttpServletRequest req, HttpServletResponse resp, Handler handler, long now) throws IOException, InvocationTargetException {
+        String key = cacheKey(req, handler);
+        ResponseCache.Entry entry = responseCache.get(key);
+        if (entry != null){
+            writeCached(req, resp, entry);
             return;
         }
-        
-        for (ViewResolver viewResolver: viewResolvers){
-            if (!mv.getView().equals(viewResolver.viewName)){
-                continue;
+        RouteMetrics metrics = handler.metrics;
+        HandlerAdapter ha = getHandlerAdapter(handler);
+        DispatchBuffers buffers = DispatchBuffers.current();
+        Object[] args = ha.resolveArguments(req, resp, buffers);
+        now = recordPhase(metrics.binding, now);
+        Object result;
+        try {
+            result = ha.invokeRaw(req, handler, args);
+        } finally {
+            buffers.releaseArguments(args);
+        }
+        now = recordPhase(metrics.invocation, now);
+        byte[] body;
+        String contentType;
+        if (handler.responseBody != null){
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonWriter writer = JsonWriter.of(out);
+            JsonSerializers.write(handler.responseBody, result, writer);
+            writer.flush();
+            body = out.toByteArray();
+            contentType = JsonSerializers.CONTENT_TYPE;
+        } else {
+            ModelAndView mv = ha.toModelAndView(handler, result);
+            if (mv == null){
+                return;
+            }
+            body = viewResolverOf(mv).renderBytes(mv);
+            contentType = ViewResolver.CONTENT_TYPE;
+        }
+        entry = responseCache.put(key, contentType, body, handler.cacheable.timeUnit().toNanos(handler.cacheable.ttl()));
+        writeCached(req, resp, entry);
+        recordPhase(metrics.render, now);
+    }
+
+    /**
+     * 批量请求：每个 req 参数是一个子请求，按原有流程分别处理，响应体留在内存中
+     * 子请求可以并行执行，结果按请求顺序以 json 数组输出，先完成的前缀先刷出
+     * 单个子请求的异常由异常解析链转为它自己的状态码，不影响其他子请求
+     */
+    private void dispatchBatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (req instanceof BatchRequest){
+            throw new ResponseStatusException(HttpServletResponse.SC_BAD_REQUEST, "批量请求不能嵌套");
+        }
+        String[] targets = req.getParameterValues(BATCH_PARAMETER);
+        if (targets == null || targets.length == 0){
+            throw new ResponseStatusException(HttpServletResponse.SC_BAD_REQUEST, "缺少请求参数: " + BATCH_PARAMETER);
+        }
+        if (targets.length > batchMaxSize){
+            throw new ResponseStatusException(HttpServletResponse.SC_BAD_REQUEST, "子请求过多: " + targets.length + " > " + batchMaxSize);
+        }
+        BatchRequest[] requests = new BatchRequest[targets.length];
+        BatchResponse[] responses = new BatchResponse[targets.length];
+        for (int i = 0; i < targets.length; i++){
+            responses[i] = new BatchResponse(resp);
+            requests[i] = new BatchRequest(req, targets[i], responses[i]);
+            if (batchExecutor != null){
+                submitBatchItem(requests[i], responses[i]);
+            }
+        }
+        resp.setContentType(JsonSerializers.CONTENT_TYPE);
+        OutputStream out = resp.getOutputStream();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(asyncTimeout);
+        out.write('[');
+        for (int i = 0; i < targets.length; i++){
+            if (batchExecutor == null){
+                dispatchBatchItem(requests[i], responses[i]);
+            } else if (!responses[i].completion().isDone()){
+                // 下一个还没完成，先把已经写好的部分发给客户端
+                resp.flushBuffer();
+            }
+            if (i > 0){
+                out.write(',');
+            }
+            writeBatchItem(out, targets[i], awaitBatchItem(requests[i], responses[i], deadline));
+        }
+        out.write(']');
+    }
+
+    private void submitBatchItem(BatchRequest request, BatchResponse response) {
+        try {
+            batchExecutor.execute(() -> dispatchBatchItem(request, response));
+        } catch (RejectedExecutionException e) {
+            dispatchBatchItem(request, response);
+        }
+    }
+
+    /**
+     * 按普通请求的流程处理子请求，异步处理的子请求在 complete 时结束
+     */
+    private void dispatchBatchItem(BatchRequest request, BatchResponse response) {
+        try {
+            doDispatch(request, response);
+        } catch (RuntimeException e) {
+            resolveException(request, response, e);
+        }
+        if (!request.isAsyncStarted()){
+            response.complete();
+        }
+    }
+
+    /**
+     * 等待子请求结束，超过截止时间时返回 null
+     */
+    private BatchResponse awaitBatchItem(BatchRequest request, BatchResponse response, long deadline) {
+        try {
+            return response.completion().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // 异步处理中的子请求由超时监听器响应
+            request.timeout();
+            return response.completion().getNow(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 输出一个子请求的结果：{"path":..,"status":..,"contentType":..,"body":..}
+     * json 响应体原样嵌入，其余按字符串输出；超时的子请求为 503
+     */
+    private void writeBatchItem(OutputStream out, String target, BatchResponse response) throws IOException {
+        int status = response == null ? HttpServletResponse.SC_SERVICE_UNAVAILABLE : response.getStatus();
+        String contentType = response == null ? ErrorResponses.CONTENT_TYPE : response.getContentType();
+        byte[] body = response == null ? ErrorResponses.bodyOf(status) : response.body();
+        JsonWriter writer = JsonWriter.of(out);
+        writer.writeAscii("{\"path\":");
+        writer.writeString(target);
+        writer.writeAscii(",\"status\":");
+        writer.writeLong(status);
+        writer.writeAscii(",\"contentType\":");
+        if (contentType == null){
+            writer.writeNull();
+        } else {
+            writer.writeString(contentType);
+        }
+        writer.writeAscii(",\"body\":");
+        if (body.length == 0){
+            writer.writeNull();
+        } else if (contentType != null && contentType.startsWith("application/json")){
+            writer.writeRaw(body);
+        } else {
+            writer.writeString(new String(body, response == null ? Template.CHARSET : response.charset()));
+        }
+        writer.writeByte((byte) '}');
+        writer.flush();
+    }
+
+    /**
+     * 输出所有路由的统计信息
+     */
+    private void writeMetrics(HttpServletResponse resp) throws IOException {
+        StringBuilder json = new StringBuilder("{\"routes\":[");
+        for (int i = 0; i < handlerMapping.size(); i++){
+            if (i > 0){
+                json.append(',');
             }
-            // 解析模板
-            String result = viewResolver.parse(mv);
-            if (result != null){
-                resp.getWriter().write(result);
-                break;
+            handlerMapping.get(i).metrics.writeJson(json);
+        }
+        json.append(']');
+        if (virtualExecutor != null){
+            json.append(",\"virtualThreads\":");
+            virtualExecutor.writeJson(json);
+        }
+        if (admissionLimiter != null){
+            json.append(",\"admission\":");
+            admissionLimiter.writeJson(json);
+        }
+        if (staticResources != null){
+            json.append(",\"static\":");
+            staticResources.writeJson(json);
+        }
+        json.append('}');
+        writeBody(resp, JsonSerializers.CONTENT_TYPE, json.toString().getBytes(Template.CHARSET));
+    }
+
+    /**
+     * 缓存 key：映射路径 + 请求路径 + 指定的请求参数（未指定时使用整个查询字符串）
+     * 正则映射下不同的 url 各自缓存；以映射路径开头，{@link ResponseCache#invalidate} 可以按映射清除。
+     * 请求路径与参数值带长度前缀，值中的 & 与 = 不会与其他 key 混淆
+     */
+    private String cacheKey(HttpServletRequest req, Handler handler) {
+        String uri = req.getRequestURI();
+        StringBuilder key = DispatchBuffers.current().text().append(handler.mapping).append('?')
+                .append(uri.length()).append(':').append(uri);
+        String[] names = handler.cacheKeyNames;
+        if (names.length == 0){
+            String query = req.getQueryString();
+            return query == null ? key.toString() : key.append('?').append(query).toString();
+        }
+        for (String name: names){
+            String value = req.getParameter(name);
+            // 参数名来自注解，顺序固定；缺少的参数记为 -1，与空字符串区分
+            key.append('&').append(name).append('=');
+            if (value == null){
+                key.append(-1);
+            } else {
+                key.append(value.length()).append(':').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 输出缓存的响应，客户端 If-None-Match 命中时返回 304
+     */
+    private void writeCached(HttpServletRequest req, HttpServletResponse resp, ResponseCache.Entry entry) throws IOException {
+        resp.setHeader(ETag.HEADER, entry.etag);
+        if (ETag.matches(req.getHeader(ETag.IF_NONE_MATCH), entry.etag)){
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        // 压缩结果随条目缓存，命中时不再压缩
+        if (resp instanceof CompressingResponse){
+            CompressingResponse compressing = (CompressingResponse) resp;
+            if (compressing.accepts(entry.body.length)){
+                resp.setContentType(entry.contentType);
+                if (compressing.writeEncoded(entry.compressed(compressing.encoding()))){
+                    return;
+                }
             }
         }
+        writeBody(resp, entry.contentType, entry.body);
+    }
+
+    private void writeBody(HttpServletResponse resp, String contentType, byte[] body) throws IOException {
+        resp.setContentType(contentType);
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
 
+    /**
+     * 输出 handler 的返回值：@ResponseBody 方法序列化为 json，其余按 ModelAndView 渲染模板
+     */
+    private void renderResult(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object result) throws IOException {
+        if (handler.responseBody != null){
+            writeJson(resp, handler.responseBody, result);
+            return;
+        }
+        applyViewResolve(req, resp, result instanceof ModelAndView ? (ModelAndView) result : null);
+    }
+
+    /**
+     * 把返回值以 json 直接写到响应流中
+     */
+    private void writeJson(HttpServletResponse resp, JsonSerializer serializer, Object value) throws IOException {
+        resp.setContentType(JsonSerializers.CONTENT_TYPE);
+        JsonWriter writer = JsonWriter.of(resp.getOutputStream());
+        JsonSerializers.write(serializer, value, writer);
+        writer.flush();
+    }
+
+    private void applyViewResolve(HttpServletRequest req, HttpServletResponse resp, ModelAndView mv) throws IOException {
+        // handler 没有返回视图
+        if (mv == null){
+            return;
+        }
+        ViewResolver viewResolver = viewResolverOf(mv);
+        // 先按模板和 model 算出 ETag，客户端已有相同内容时不再渲染
+        String etag = ETag.format(viewResolver.template.hash(mv.getModel()));
+        resp.setHeader(ETag.HEADER, etag);
+        if (ETag.matches(req.getHeader(ETag.IF_NONE_MATCH), etag)){
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        // 解析模板，直接写到响应流中
+        viewResolver.render(mv, resp);
+    }
+
+    /**
+     * 查找 handler 返回的视图，不存在时按 500 交给异常解析链
+     */
+    private ViewResolver viewResolverOf(ModelAndView mv) {
+        ViewResolver viewResolver = viewRegistry.get(mv.getView());
+        if (viewResolver == null){
+            throw new ResponseStatusException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "视图不存在: " + mv.getView());
+        }
+        return viewResolver;
     }
 
     private HandlerAdapter getHandlerAdapter(Handler handler) {
@@ -135,66 +1041,38 @@ public class DispatcherServlet extends HttpServlet {
      * 根据请求url 获取 handler 对象
      */
     private Handler getHandler(String requestURI) {
-        if (handlerMapping.isEmpty()){
+        if (routeIndex.isEmpty()){
             return null;
         }
-        for (Handler handler: handlerMapping) {
-            Matcher matcher = handler.pattern.matcher(requestURI);
-            if (!matcher.matches()){
-                continue;
-            }
-            return handler;
-        }
-        return null;
+        return routeIndex.match(requestURI);
     }
 
     /**
      * 适配过程
      */
-    private void initHandlerAdapters(ApplicationContext context) {
+    private void initHandlerAdapters(ApplicationContext context) throws ServletException {
         if(handlerMapping.isEmpty()){
             return;
         }
-        Map<String, Integer> paramMapping = new HashMap<>();
         for (Handler handler: handlerMapping ) {
-            // 拿到 handler 对应的 method 对应的参数
-            Class<?>[] parameterTypes = handler.method.getParameterTypes();
-            // 遍历参数数组，并放入paramMapping 中， 以便后续工作用反射调用方法
-            for (int i = 0; i < parameterTypes.length; i++) {
-                Class<?> parameterType = parameterTypes[i];
-                // 如果参数类型是HttpServletRequest/Response
-                if (parameterType == HttpServletRequest.class ||
-                    parameterType == HttpServletResponse.class){
-                    paramMapping.put(parameterType.getName(), i);
-                }
-            }
-            // 遍历参数上的注解
-            Annotation[][] parameterAnnotations = handler.method.getParameterAnnotations();
-            for (int i = 0; i < parameterAnnotations.length; i++) {
-                for (Annotation a:parameterAnnotations[i] ) {
-                    // 判断 @RequestParam参数
-                    if (a instanceof RequestParam){
-                        // 如果是， 拿到值进行存储
-                        String value = ((RequestParam) a).value();
-                        paramMapping.put(value, i);
-                    }
-                }
+            // 每个方法生成一份按参数下标排列的解析计划
+            try {
+                adapterMapping.put(handler, new HandlerAdapter(ArgumentResolvers.plan(handler.method.getParameters())));
+            } catch (IllegalArgumentException e) {
+                throw new ServletException("无法解析 handler 方法参数: " + handler.method, e);
             }
-            // 每个方法 对应存放其参数
-            adapterMapping.put(handler, new HandlerAdapter(paramMapping));
         }
-        // 循环将所有handler的反射执行 所要的参数存储好
     }
 
-    private void initHandlerMapping(ApplicationContext context) {
-        // 1. 拿到ioc容器
-        Map<String, Object> ioc = context.getAll();
+    private void initHandlerMapping(ApplicationContext context) throws ServletException {
+        // 1. 拿到ioc容器中的bean类型，懒加载模式下不会触发创建
+        Map<String, Class<?>> ioc = context.getBeanTypes();
         if (ioc.isEmpty()) {
             return;
         }
         // 2. 拿到有Controller注解的类， 并解析其方法
-        for (Map.Entry<String, Object> entry : ioc.entrySet()) {
-            Class<?> clazz = entry.getValue().getClass();
+        for (Map.Entry<String, Class<?>> entry : ioc.entrySet()) {
+            Class<?> clazz = entry.getValue();
             if (!clazz.isAnnotationPresent(Controller.class)) {
                 continue;
             }
@@ -213,16 +1091,38 @@ public class DispatcherServlet extends HttpServlet {
                 RequestMapping annotation = method.getAnnotation(RequestMapping.class);
                 String regex = url+annotation.value();
                 Pattern pattern = Pattern.compile(regex);
-                handlerMapping.add(new Handler(entry.getValue(), method, pattern));
+                Handler handler;
+                try {
+                    handler = new Handler(context, entry.getKey(), method, pattern);
+                } catch (IllegalAccessException e) {
+                    throw new ServletException("无法绑定 handler 方法: " + method, e);
+                }
+                handlerMapping.add(handler);
+                routeIndex.add(regex, handler);
                 System.out.println("Mapping: " + regex + " " +  method.toString());
+                if (handler.cacheable == null && method.isAnnotationPresent(Cacheable.class)){
+                    System.err.println("@Cacheable 对异步或 @VirtualThread handler 无效，不缓存响应: " + method);
+                }
             }
         }
     }
     private class Handler{
         /**
-         * 类
+         * IOC容器
+         */
+        private ApplicationContext context;
+        /**
+         * controller 在IOC容器中的名字
          */
-        private Object controller;
+        private String beanName;
+        /**
+         * 类，懒加载模式下第一次请求时才从IOC容器中获取
+         */
+        private volatile Object controller;
+        /**
+         * controller 是否为单例，非单例每次调用都从IOC容器中获取
+         */
+        private boolean singleton;
         /**
          * 方法
          */
@@ -231,11 +1131,107 @@ public class DispatcherServlet extends HttpServlet {
          * url
          */
         private Pattern pattern;
+        /**
+         * 完整的映射路径
+         */
+        private String mapping;
+        /**
+         * 缓存配置，不可缓存时为 null
+         */
+        private Cacheable cacheable;
+        /**
+         * @Cacheable 指定的缓存 key 参数名，注解的 key() 每次调用都会复制数组
+         */
+        private String[] cacheKeyNames;
+        /**
+         * 统计信息
+         */
+        private RouteMetrics metrics;
+        /**
+         * @ConcurrencyLimit 的并发上限，没有限制时为 null
+         */
+        private ConcurrencyLimiter limiter;
+        /**
+         * 方法调用器
+         */
+        private HandlerInvoker invoker;
+        /**
+         * 缓存的参数类型，避免每次 getParameterTypes() 复制数组
+         */
+        private Class<?>[] parameterTypes;
+        /**
+         * 返回值是否为 ModelAndView
+         */
+        private boolean returnsModelAndView;
+        /**
+         * 返回值是否为 CompletionStage/CompletableFuture
+         */
+        private boolean returnsAsync;
+        /**
+         * 是否在虚拟线程上调用
+         */
+        private boolean virtual;
+        /**
+         * @ResponseBody 方法返回值的 json 序列化器，非 @ResponseBody 方法为 null
+         */
+        private JsonSerializer responseBody;
 
-        public Handler(Object controller, Method method, Pattern pattern) {
-            this.controller = controller;
+        public Handler(ApplicationContext context, String beanName, Method method, Pattern pattern) throws IllegalAccessException {
+            this.context = context;
+            this.beanName = beanName;
+            this.controller = context.getAll().get(beanName);
+            this.singleton = context.isSingleton(beanName);
             this.method = method;
             this.pattern = pattern;
+            this.mapping = pattern.pattern();
+            this.returnsAsync = CompletionStage.class.isAssignableFrom(method.getReturnType());
+            this.virtual = method.isAnnotationPresent(VirtualThread.class)
+                    || method.getDeclaringClass().isAnnotationPresent(VirtualThread.class);
+            if (method.isAnnotationPresent(ResponseBody.class)){
+                // 异步 handler 按 CompletionStage 的类型参数生成
+                Type bodyType = method.getGenericReturnType();
+                if (returnsAsync){
+                    bodyType = bodyType instanceof ParameterizedType ? ((ParameterizedType) bodyType).getActualTypeArguments()[0] : Object.class;
+                }
+                this.responseBody = JsonSerializers.forType(bodyType);
+            }
+            // 异步 handler 与虚拟线程 handler 不走响应缓存，缓存在容器线程上同步调用 handler
+            this.cacheable = returnsAsync || virtual ? null : method.getAnnotation(Cacheable.class);
+            this.cacheKeyNames = cacheable == null ? null : cacheable.key();
+            this.metrics = new RouteMetrics(mapping);
+            ConcurrencyLimit limit = method.isAnnotationPresent(ConcurrencyLimit.class)
+                    ? method.getAnnotation(ConcurrencyLimit.class) : method.getDeclaringClass().getAnnotation(ConcurrencyLimit.class);
+            this.limiter = limit == null ? null : new ConcurrencyLimiter(limit.value());
+            this.invoker = HandlerInvoker.bind(method);
+            this.parameterTypes = method.getParameterTypes();
+            this.returnsModelAndView = method.getReturnType() == ModelAndView.class;
+        }
+
+        /**
+         * 获取 controller 实例，单例创建后不再访问IOC容器
+         */
+        Object getController(HttpServletRequest req) {
+            if (!singleton) {
+                return context.getBean(beanName, requestScope(req));
+            }
+            Object controller = this.controller;
+            if (controller == null) {
+                controller = context.getBean(beanName);
+                this.controller = controller;
+            }
+            return controller;
+        }
+
+        /**
+         * 当前请求的 request 作用域，第一次使用时创建
+         */
+        private RequestScope requestScope(HttpServletRequest req) {
+            RequestScope scope = (RequestScope) req.getAttribute(REQUEST_SCOPE);
+            if (scope == null) {
+                scope = context.newRequestScope();
+                req.setAttribute(REQUEST_SCOPE, scope);
+            }
+            return scope;
         }
     }
 
@@ -243,120 +1239,57 @@ public class DispatcherServlet extends HttpServlet {
      * 方法适配器：存放方法的参数
      */
     private class HandlerAdapter {
-        private Map<String, Integer> paramMappring;
+        /**
+         * 按参数下标排列的解析器
+         */
+        private ArgumentResolver[] resolvers;
 
-        HandlerAdapter(Map<String, Integer> paramMappring) {
-            this.paramMappring = paramMappring;
+        HandlerAdapter(ArgumentResolver[] resolvers) {
+            this.resolvers = resolvers;
         }
 
         /**
-         *
+         * 按解析计划取参数
+         * @param buffers 不为 null 时从中取参数数组，调用结束后由调用方归还；为 null 时新分配
          */
-        ModelAndView handle(HttpServletRequest req, HttpServletResponse resp, Handler handler) throws InvocationTargetException, IllegalAccessException {
-            // 拿到request请求中的参数列表
-            Map<String, String[]> reqParam = req.getParameterMap();
-            // 拿到我们adapter处理完后的参数列表
-            Class<?>[] parameterTypes = handler.method.getParameterTypes();
+        Object[] resolveArguments(HttpServletRequest req, HttpServletResponse resp, DispatchBuffers buffers) {
             // 定义一个Object数组来存放参数值
-            Object[] paramValue = new Object[parameterTypes.length];
-            // 遍历reqParam并赋值
-            for (Map.Entry<String, String[]> entry: reqParam.entrySet()){
-                String key = entry.getKey();
-                String[] values = entry.getValue();
-                // 将value进行格式化， 去掉空格,去掉[ ]
-                String value = Arrays.toString(values).trim().replaceAll("[\\[]]","");
-                // 判断 paramMapping 中是否有这个key，如果有：则赋值， 没有，则跳过
-                if (!paramMappring.containsKey(key)){
-                    continue;
+            Object[] paramValue = buffers == null ? new Object[resolvers.length] : buffers.arguments(resolvers.length);
+            try {
+                for (int i = 0; i < resolvers.length; i++) {
+                    paramValue[i] = resolvers[i].resolve(req, resp);
                 }
-                // 赋值: 1. 拿到index
-                int index = paramMappring.get(key);
-                // 赋值：2. 存放到Object[], 这里要先判断参数类型
-                paramValue[index] = paramTypeTransfer(key, parameterTypes[index]);
-            }
-
-            // 给HttpServletRequest和response参数赋值
-            String reqName = HttpServletRequest.class.getName();
-            if (this.paramMappring.containsKey(reqName)){
-                int index = paramMappring.get(reqName);
-                paramValue[index] = req;
-            }
-            String respName = HttpServletResponse.class.getName();
-            if (paramMappring.containsKey(respName)){
-                int index = paramMappring.get(respName);
-                paramValue[index] = resp;
-            }
-            // 反射调用handler方法
-            Object invoke = handler.method.invoke(handler.controller, paramValue);
-            // 如果该方法的返回参数是 ModelAndView 则进行类型转换并返回
-            if (returnTypeIsModleAndView(handler)){
-                return (ModelAndView)invoke;
-            }else {
-                return null;
+            } catch (RuntimeException e) {
+                // 参数解析失败时调用方拿不到数组，在这里归还
+                if (buffers != null) {
+                    buffers.releaseArguments(paramValue);
+                }
+                throw e;
             }
-
+            return paramValue;
         }
-    }
-
-    private boolean returnTypeIsModleAndView(Handler handler) {
-        return handler.method.getReturnType() == ModelAndView.class;
-    }
-
-    private Object paramTypeTransfer(String value, Class<?> key) {
-       if (key == String.class){
-           return value;
-       }else if (key == Integer.class){
-           return Integer.valueOf(value);
-       }else if (key == int.class){
-           return Integer.valueOf(value);
-       }
-       return null;
-    }
 
-    private class ViewResolver {
-        private String viewName;
-        private File file;
-
-        public ViewResolver(String viewName, File file) {
-            this.viewName = viewName;
-            this.file = file;
-        }
-
-        public String parse(ModelAndView mv) throws IOException {
-            StringBuffer buffer = new StringBuffer();
-            RandomAccessFile file = new RandomAccessFile(this.file, "r");
-            try {
-                String line = null;
-                while (null != (line = file.readLine())){
-                    Matcher matcher = matcher(line);
-                    while (matcher.find()){
-                        for (int i = 0; i < matcher.groupCount(); i++ ){
-                            // 拿到键
-                            String key = matcher.group(i).replaceAll("\\$\\{|\\}","");
-                            // 拿到值
-                            Object value = mv.getModel().get(key);
-                            if (null == value){ continue; }
-                            // 将${name} 替换成 value值
-                            line = line.replaceAll("\\$\\{" + key + "\\}", String.valueOf(value));
-                        }
-                    }
-                    buffer.append(line);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }finally {
-                file.close();
-            }
-            return buffer.toString();
+        /**
+         * 调用 handler 方法，返回原始返回值
+         */
+        Object invokeRaw(HttpServletRequest req, Handler handler, Object[] paramValue) throws InvocationTargetException {
+            // 通过预先绑定的调用器执行handler方法
+            return handler.invoker.invoke(handler.getController(req), paramValue);
         }
 
         /**
-         * 正则匹配
+         * 如果该方法的返回参数是 ModelAndView 则进行类型转换并返回
          */
-        private Matcher matcher(String line) {
-            Pattern pattern = Pattern.compile("\\$\\{(.+?)\\}", Pattern.CASE_INSENSITIVE);
-            return pattern.matcher(line);
+        ModelAndView toModelAndView(Handler handler, Object result) {
+            if (returnTypeIsModleAndView(handler)){
+                return (ModelAndView)result;
+            }else {
+                return null;
+            }
         }
     }
-}
 
+    private boolean returnTypeIsModleAndView(Handler handler) {
+        return handler.returnsModelAndView;
+    }
+}
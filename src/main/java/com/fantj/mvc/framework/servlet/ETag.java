@@ -0,0 +1,116 @@
+package com.fantj.mvc.framework.servlet;
+
+/**
+* ETag 计算与 If-None-Match 匹配 -- 64 位 FNV-1a 哈希，只用于判断内容是否变化
+* @author JiaoFanTing
+**/
+final class ETag {
+
+    static final String HEADER = "ETag";
+    static final String IF_NONE_MATCH = "If-None-Match";
+
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private ETag() {
+    }
+
+    static long hash(byte[] bytes) {
+        long hash = OFFSET;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * PRIME;
+        }
+        return hash;
+    }
+
+    static long hash(CharSequence chars) {
+        long hash = OFFSET;
+        for (int i = 0, length = chars.length(); i < length; i++) {
+            hash = (hash ^ chars.charAt(i)) * PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 把一段内容的哈希并入已有的哈希，用于按片段计算整体的哈希
+     */
+    static long combine(long hash, long part) {
+        return (hash ^ part) * PRIME;
+    }
+
+    static long seed() {
+        return OFFSET;
+    }
+
+    static String format(long hash) {
+        return DispatchBuffers.current().quotedHex(hash);
+    }
+
+    /**
+     * 压缩后的表示使用带编码后缀的 ETag，如 "abc" -> "abc-gzip"
+     */
+    static String withEncoding(String etag, ContentEncoding encoding) {
+        if (etag.length() < 2 || etag.charAt(etag.length() - 1) != '"') {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + '-' + encoding.token + '"';
+    }
+
+    /**
+     * If-None-Match 是否命中：支持 *、逗号分隔的多个值以及弱校验的 W/ 前缀，
+     * 带编码后缀的值与原始 ETag 视为同一内容
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        int length = ifNoneMatch.length();
+        int pos = 0;
+        while (pos < length) {
+            int end = ifNoneMatch.indexOf(',', pos);
+            if (end < 0) {
+                end = length;
+            }
+            int from = pos;
+            int to = end;
+            while (from < to && ifNoneMatch.charAt(from) == ' ') {
+                from++;
+            }
+            while (to > from && ifNoneMatch.charAt(to - 1) == ' ') {
+                to--;
+            }
+            if (to - from == 1 && ifNoneMatch.charAt(from) == '*') {
+                return true;
+            }
+            if (ifNoneMatch.startsWith("W/", from)) {
+                from += 2;
+            }
+            if (to - from == etag.length() && ifNoneMatch.regionMatches(from, etag, 0, etag.length())) {
+                return true;
+            }
+            if (matchesEncoded(ifNoneMatch, from, to, etag)) {
+                return true;
+            }
+            pos = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * ifNoneMatch[from, to) 是否为 etag 加上某个编码后缀
+     */
+    private static boolean matchesEncoded(String ifNoneMatch, int from, int to, String etag) {
+        int prefix = etag.length() - 1;
+        if (prefix < 1 || to - from <= etag.length() || ifNoneMatch.charAt(to - 1) != '"'
+                || !ifNoneMatch.regionMatches(from, etag, 0, prefix) || ifNoneMatch.charAt(from + prefix) != '-') {
+            return false;
+        }
+        int tokenStart = from + prefix + 1;
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            if (to - 1 - tokenStart == encoding.token.length() && ifNoneMatch.regionMatches(tokenStart, encoding.token, 0, encoding.token.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
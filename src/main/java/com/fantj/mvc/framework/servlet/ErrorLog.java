@@ -0,0 +1,94 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* 错误日志 -- 请求线程只把异常放入有界队列，由后台线程格式化调用栈并输出到 stderr
+* 每秒最多记录 permitsPerSecond 条，超出或队列已满的只计数，之后汇总输出一行，避免错误风暴时日志本身拖垮服务
+* DispatcherServlet 把实例放到 ServletContext 属性中，内置服务器与 ServletContext.log 共用同一个限流
+* @author JiaoFanTing
+**/
+public final class ErrorLog implements Closeable {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int permitsPerSecond;
+    private final ArrayBlockingQueue<Entry> queue;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final LongAdder suppressed = new LongAdder();
+    private final Thread thread;
+
+    public ErrorLog(int permitsPerSecond, int queueSize) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.thread = new Thread(this::drain, "mvc-error-log");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 记录一条错误，不阻塞
+     */
+    public void log(String message, Throwable error) {
+        if (!tryAcquire() || !queue.offer(new Entry(message, error))) {
+            suppressed.increment();
+        }
+    }
+
+    /**
+     * 固定窗口限流
+     */
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= permitsPerSecond;
+    }
+
+    long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Entry entry = queue.poll(1, TimeUnit.SECONDS);
+                long dropped = suppressed.sumThenReset();
+                if (dropped > 0) {
+                    System.err.println("错误日志限流，丢弃 " + dropped + " 条");
+                }
+                if (entry != null) {
+                    System.err.println(entry.message);
+                    if (entry.error != null) {
+                        entry.error.printStackTrace();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() 结束
+        }
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+
+    private static final class Entry {
+        final String message;
+        final Throwable error;
+
+        Entry(String message, Throwable error) {
+            this.message = message;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+* 预先编码的错误响应 -- 404/500 等常见状态码的响应体启动时编码一次，出错时只写固定字节
+* @author JiaoFanTing
+**/
+final class ErrorResponses {
+
+    static final String CONTENT_TYPE = "text/plain;charset=UTF-8";
+
+    private static final byte[] BAD_REQUEST = body("400 Bad Request");
+    private static final byte[] NOT_FOUND = body("404 Not Found");
+    private static final byte[] METHOD_NOT_ALLOWED = body("405 Method Not Allowed");
+    private static final byte[] INTERNAL_SERVER_ERROR = body("500 Internal Server Error");
+    private static final byte[] SERVICE_UNAVAILABLE = body("503 Service Unavailable");
+
+    private ErrorResponses() {
+    }
+
+    private static byte[] body(String text) {
+        return text.getBytes(Template.CHARSET);
+    }
+
+    /**
+     * 状态码对应的预编码响应体，不常见的状态码只输出数字
+     */
+    static byte[] bodyOf(int status) {
+        switch (status) {
+            case HttpServletResponse.SC_BAD_REQUEST:
+                return BAD_REQUEST;
+            case HttpServletResponse.SC_NOT_FOUND:
+                return NOT_FOUND;
+            case HttpServletResponse.SC_METHOD_NOT_ALLOWED:
+                return METHOD_NOT_ALLOWED;
+            case HttpServletResponse.SC_INTERNAL_SERVER_ERROR:
+                return INTERNAL_SERVER_ERROR;
+            case HttpServletResponse.SC_SERVICE_UNAVAILABLE:
+                return SERVICE_UNAVAILABLE;
+            default:
+                return body(String.valueOf(status));
+        }
+    }
+
+    /**
+     * 输出状态码与预编码的响应体
+     */
+    static boolean write(HttpServletResponse resp, int status) throws IOException {
+        return write(resp, status, bodyOf(status));
+    }
+
+    /**
+     * 丢弃未提交的输出，写入状态码与响应体
+     * @return 响应已提交、无法改写时返回 false
+     */
+    static boolean write(HttpServletResponse resp, int status, byte[] body) throws IOException {
+        if (resp.isCommitted()) {
+            return false;
+        }
+        try {
+            resp.resetBuffer();
+        } catch (IllegalStateException e) {
+            // 压缩输出已经开始
+            return false;
+        }
+        resp.setStatus(status);
+        resp.setContentType(CONTENT_TYPE);
+        resp.setContentLength(body.length);
+        OutputStream out;
+        try {
+            out = resp.getOutputStream();
+        } catch (IllegalStateException e) {
+            // handler 已经取过 writer
+            resp.getWriter().write(new String(body, Template.CHARSET));
+            return true;
+        }
+        out.write(body);
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+* 异常解析器 -- 把 handler 抛出的异常转换成响应
+* IOC 容器中实现了该接口的 bean 按 bean 名顺序组成解析链，链尾是内置的默认解析器
+* @author JiaoFanTing
+**/
+public interface ExceptionResolver {
+
+    /**
+     * 处理异常
+     * @param ex handler 抛出的异常（已去掉反射调用的包装）
+     * @return 已输出响应时返回 true，不再交给后面的解析器
+     */
+    boolean resolve(HttpServletRequest req, HttpServletResponse resp, Throwable ex) throws IOException;
+}
@@ -0,0 +1,51 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+* handler 方法调用器 -- 启动时把 Method 绑定成 MethodHandle，请求时不再走 Method.invoke
+* @author JiaoFanTing
+**/
+final class HandlerInvoker {
+
+    private static final MethodType INVOKE_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    /**
+     * 展开参数数组的方法句柄：(Object controller, Object[] args)Object
+     */
+    private final MethodHandle handle;
+
+    private HandlerInvoker(MethodHandle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 为 method 生成调用器，controller 实例在调用时传入，以便支持懒加载的 controller
+     */
+    static HandlerInvoker bind(Method method) throws IllegalAccessException {
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        handle = handle.asSpreader(Object[].class, method.getParameterCount())
+                .asType(INVOKE_TYPE);
+        return new HandlerInvoker(handle);
+    }
+
+    /**
+     * 调用 handler 方法，方法本身抛出的异常与反射调用一样包装成 InvocationTargetException
+     */
+    Object invoke(Object controller, Object[] args) throws InvocationTargetException {
+        try {
+            return (Object) handle.invokeExact(controller, args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+}
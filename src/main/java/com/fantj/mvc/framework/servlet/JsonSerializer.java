@@ -0,0 +1,15 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.IOException;
+
+/**
+* 把某个类型的值以 json 写出，由 JsonSerializers 按类型预先生成
+* @author JiaoFanTing
+**/
+interface JsonSerializer {
+
+    /**
+     * @param value 非 null
+     */
+    void write(Object value, JsonWriter out) throws IOException;
+}
@@ -0,0 +1,376 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* json 序列化计划 -- 按类型生成并缓存序列化器
+* 普通对象按字段输出，字段读取使用预先绑定的 MethodHandle，序列化时不再反射查找
+* @author JiaoFanTing
+**/
+final class JsonSerializers {
+
+    static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Map<Class<?>, JsonSerializer> SERIALIZERS = new ConcurrentHashMap<>();
+    /**
+     * 正在生成的序列化器，类型之间循环引用时直接取用，生成完成后才放入 SERIALIZERS
+     */
+    private static final Map<Class<?>, JsonSerializer> BUILDING = new HashMap<>();
+
+    /**
+     * 按运行时类型查找序列化器，用于声明类型是接口、抽象类或 Object 的情况
+     */
+    static final JsonSerializer DYNAMIC = (value, out) -> forClass(value.getClass()).write(value, out);
+
+    private static final JsonSerializer STRING = (value, out) -> out.writeString((CharSequence) value);
+    private static final JsonSerializer INTEGRAL = (value, out) -> out.writeLong(((Number) value).longValue());
+    private static final JsonSerializer DOUBLE = (value, out) -> out.writeDouble((Double) value);
+    private static final JsonSerializer FLOAT = (value, out) -> out.writeFloat((Float) value);
+    private static final JsonSerializer NUMBER = (value, out) -> out.writeAscii(value.toString());
+    private static final JsonSerializer BOOLEAN = (value, out) -> out.writeBoolean((Boolean) value);
+    private static final JsonSerializer TO_STRING = (value, out) -> out.writeString(value.toString());
+
+    static {
+        SERIALIZERS.put(String.class, STRING);
+        for (Class<?> type : new Class<?>[]{Integer.class, Long.class, Short.class, Byte.class}) {
+            SERIALIZERS.put(type, INTEGRAL);
+        }
+        SERIALIZERS.put(Double.class, DOUBLE);
+        SERIALIZERS.put(Float.class, FLOAT);
+        SERIALIZERS.put(Boolean.class, BOOLEAN);
+        SERIALIZERS.put(Character.class, TO_STRING);
+        SERIALIZERS.put(int[].class, (value, out) -> {
+            int[] array = (int[]) value;
+            out.writeByte((byte) '[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.writeByte((byte) ',');
+                }
+                out.writeLong(array[i]);
+            }
+            out.writeByte((byte) ']');
+        });
+        SERIALIZERS.put(long[].class, (value, out) -> {
+            long[] array = (long[]) value;
+            out.writeByte((byte) '[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.writeByte((byte) ',');
+                }
+                out.writeLong(array[i]);
+            }
+            out.writeByte((byte) ']');
+        });
+        SERIALIZERS.put(double[].class, (value, out) -> {
+            double[] array = (double[]) value;
+            out.writeByte((byte) '[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.writeByte((byte) ',');
+                }
+                out.writeDouble(array[i]);
+            }
+            out.writeByte((byte) ']');
+        });
+        SERIALIZERS.put(char[].class, (value, out) -> out.writeString(new String((char[]) value)));
+    }
+
+    private JsonSerializers() {
+    }
+
+    /**
+     * 按声明类型生成序列化器，handler 返回值与对象字段都通过这里
+     */
+    static JsonSerializer forType(Type type) {
+        if (type instanceof ParameterizedType) {
+            type = ((ParameterizedType) type).getRawType();
+        }
+        if (!(type instanceof Class)) {
+            return DYNAMIC;
+        }
+        Class<?> declared = (Class<?>) type;
+        if (declared.isPrimitive()) {
+            return forClass(box(declared));
+        }
+        if (declared == Object.class || declared.isInterface() || Modifier.isAbstract(declared.getModifiers()) && !declared.isArray()) {
+            return DYNAMIC;
+        }
+        JsonSerializer serializer = forClass(declared);
+        if (Modifier.isFinal(declared.getModifiers())) {
+            return serializer;
+        }
+        // 声明类型可能有子类，运行时类型不同时再按实际类型查找
+        return (value, out) -> (value.getClass() == declared ? serializer : forClass(value.getClass())).write(value, out);
+    }
+
+    /**
+     * 输出可能为 null 的值
+     */
+    static void write(JsonSerializer serializer, Object value, JsonWriter out) throws IOException {
+        if (value == null) {
+            out.writeNull();
+        } else {
+            serializer.write(value, out);
+        }
+    }
+
+    static JsonSerializer forClass(Class<?> type) {
+        JsonSerializer serializer = SERIALIZERS.get(type);
+        if (serializer != null) {
+            return serializer;
+        }
+        synchronized (BUILDING) {
+            serializer = SERIALIZERS.get(type);
+            if (serializer == null) {
+                serializer = BUILDING.get(type);
+            }
+            if (serializer != null) {
+                return serializer;
+            }
+            boolean outermost = BUILDING.isEmpty();
+            try {
+                serializer = build(type);
+                if (outermost) {
+                    SERIALIZERS.putAll(BUILDING);
+                    SERIALIZERS.put(type, serializer);
+                } else {
+                    BUILDING.put(type, serializer);
+                }
+                return serializer;
+            } finally {
+                if (outermost) {
+                    BUILDING.clear();
+                }
+            }
+        }
+    }
+
+    private static JsonSerializer build(Class<?> type) {
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return STRING;
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            return NUMBER;
+        }
+        if (Enum.class.isAssignableFrom(type)) {
+            return (value, out) -> out.writeString(((Enum<?>) value).name());
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            return (value, out) -> out.writeLong(((Date) value).getTime());
+        }
+        if (Optional.class == type) {
+            return (value, out) -> write(DYNAMIC, ((Optional<?>) value).orElse(null), out);
+        }
+        if (type.isArray()) {
+            return arraySerializer(type.getComponentType());
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return JsonSerializers::writeMap;
+        }
+        if (Iterable.class.isAssignableFrom(type)) {
+            return JsonSerializers::writeIterable;
+        }
+        // 其余 JDK 类型（UUID、java.time 等）输出 toString，不读取其私有字段
+        String name = type.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.")) {
+            return TO_STRING;
+        }
+        return beanSerializer(type);
+    }
+
+    private static JsonSerializer arraySerializer(Class<?> componentType) {
+        if (componentType.isPrimitive()) {
+            JsonSerializer element = forClass(box(componentType));
+            return (value, out) -> {
+                out.writeByte((byte) '[');
+                for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                    if (i > 0) {
+                        out.writeByte((byte) ',');
+                    }
+                    element.write(Array.get(value, i), out);
+                }
+                out.writeByte((byte) ']');
+            };
+        }
+        JsonSerializer element = forType(componentType);
+        return (value, out) -> {
+            Object[] array = (Object[]) value;
+            out.writeByte((byte) '[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.writeByte((byte) ',');
+                }
+                write(element, array[i], out);
+            }
+            out.writeByte((byte) ']');
+        };
+    }
+
+    private static void writeIterable(Object value, JsonWriter out) throws IOException {
+        out.writeByte((byte) '[');
+        boolean first = true;
+        for (Object element : (Iterable<?>) value) {
+            if (!first) {
+                out.writeByte((byte) ',');
+            }
+            first = false;
+            write(DYNAMIC, element, out);
+        }
+        out.writeByte((byte) ']');
+    }
+
+    private static void writeMap(Object value, JsonWriter out) throws IOException {
+        out.writeByte((byte) '{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!first) {
+                out.writeByte((byte) ',');
+            }
+            first = false;
+            out.writeString(String.valueOf(entry.getKey()));
+            out.writeByte((byte) ':');
+            write(DYNAMIC, entry.getValue(), out);
+        }
+        out.writeByte((byte) '}');
+    }
+
+    /**
+     * 普通对象：按声明顺序输出父类到子类的非 static、非 transient 字段
+     */
+    private static JsonSerializer beanSerializer(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        collectFields(type, fields);
+        List<PropertyWriter> properties = new ArrayList<>();
+        // 先登记自身，字段类型引用回本类型时能取到
+        BeanSerializer bean = new BeanSerializer();
+        BUILDING.put(type, bean);
+        for (Field field : fields) {
+            String name = (properties.isEmpty() ? "\"" : ",\"") + field.getName() + "\":";
+            properties.add(propertyWriter(field, name.getBytes(Template.CHARSET)));
+        }
+        bean.properties = properties.toArray(new PropertyWriter[0]);
+        return bean;
+    }
+
+    private static void collectFields(Class<?> type, List<Field> fields) {
+        if (type == null || type == Object.class) {
+            return;
+        }
+        collectFields(type.getSuperclass(), fields);
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                fields.add(field);
+            }
+        }
+    }
+
+    private static PropertyWriter propertyWriter(Field field, byte[] name) {
+        field.setAccessible(true);
+        MethodHandle getter;
+        try {
+            getter = LOOKUP.unreflectGetter(field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("无法读取字段: " + field, e);
+        }
+        Class<?> type = field.getType();
+        if (type == int.class || type == long.class || type == short.class || type == byte.class) {
+            MethodHandle typed = getter.asType(MethodType.methodType(long.class, Object.class));
+            return new PropertyWriter(name) {
+                @Override
+                void writeValue(Object bean, JsonWriter out) throws Throwable {
+                    out.writeLong((long) typed.invokeExact(bean));
+                }
+            };
+        }
+        if (type == double.class) {
+            MethodHandle typed = getter.asType(MethodType.methodType(double.class, Object.class));
+            return new PropertyWriter(name) {
+                @Override
+                void writeValue(Object bean, JsonWriter out) throws Throwable {
+                    out.writeDouble((double) typed.invokeExact(bean));
+                }
+            };
+        }
+        if (type == float.class) {
+            MethodHandle typed = getter.asType(MethodType.methodType(float.class, Object.class));
+            return new PropertyWriter(name) {
+                @Override
+                void writeValue(Object bean, JsonWriter out) throws Throwable {
+                    out.writeFloat((float) typed.invokeExact(bean));
+                }
+            };
+        }
+        if (type == boolean.class) {
+            MethodHandle typed = getter.asType(MethodType.methodType(boolean.class, Object.class));
+            return new PropertyWriter(name) {
+                @Override
+                void writeValue(Object bean, JsonWriter out) throws Throwable {
+                    out.writeBoolean((boolean) typed.invokeExact(bean));
+                }
+            };
+        }
+        MethodHandle typed = getter.asType(MethodType.methodType(Object.class, Object.class));
+        JsonSerializer serializer = forType(field.getGenericType());
+        return new PropertyWriter(name) {
+            @Override
+            void writeValue(Object bean, JsonWriter out) throws Throwable {
+                write(serializer, (Object) typed.invokeExact(bean), out);
+            }
+        };
+    }
+
+    private static Class<?> box(Class<?> primitive) {
+        return MethodType.methodType(primitive).wrap().returnType();
+    }
+
+    /**
+     * 对象的一个字段：预先编码好的字段名加上读取并输出字段值的方法
+     */
+    private abstract static class PropertyWriter {
+        final byte[] name;
+
+        PropertyWriter(byte[] name) {
+            this.name = name;
+        }
+
+        abstract void writeValue(Object bean, JsonWriter out) throws Throwable;
+    }
+
+    private static final class BeanSerializer implements JsonSerializer {
+        private PropertyWriter[] properties;
+
+        @Override
+        public void write(Object value, JsonWriter out) throws IOException {
+            out.writeByte((byte) '{');
+            for (PropertyWriter property : properties) {
+                out.writeRaw(property.name);
+                try {
+                    property.writeValue(value, out);
+                } catch (IOException | RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            out.writeByte((byte) '}');
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+* 流式 json 输出 -- 直接把 UTF-8 字节写入缓冲区，满了再刷到底层流，不生成中间字符串
+* 非线程安全，每个线程通过 {@link #of(OutputStream)} 复用一个实例
+* @author JiaoFanTing
+**/
+final class JsonWriter {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(Template.CHARSET);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(Template.CHARSET);
+
+    private static final ThreadLocal<JsonWriter> WRITERS = ThreadLocal.withInitial(() -> new JsonWriter(8192));
+
+    private final byte[] buffer;
+    private int position;
+    private OutputStream out;
+
+    JsonWriter(int bufferSize) {
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * 取当前线程的 writer 并绑定到 out
+     */
+    static JsonWriter of(OutputStream out) {
+        JsonWriter writer = WRITERS.get();
+        writer.out = out;
+        writer.position = 0;
+        return writer;
+    }
+
+    void writeByte(byte b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = b;
+    }
+
+    void writeRaw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    void writeNull() throws IOException {
+        writeRaw(NULL);
+    }
+
+    void writeBoolean(boolean value) throws IOException {
+        writeRaw(value ? TRUE : FALSE);
+    }
+
+    void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(MIN_LONG);
+            return;
+        }
+        // long 最多 20 个字符
+        if (buffer.length - position < 20) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + digits(value);
+        int i = end;
+        do {
+            buffer[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        position = end;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * NaN 与 Infinity 在 json 中没有表示，输出 null
+     */
+    void writeDouble(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeNull();
+        } else if (value == (long) value && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * float 单独处理，避免转成 double 后出现多余的小数位
+     */
+    void writeFloat(float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            writeNull();
+        } else if (value == (long) value && Math.abs(value) < 1e7) {
+            writeLong((long) value);
+        } else {
+            writeAscii(Float.toString(value));
+        }
+    }
+
+    /**
+     * 输出只含 ASCII 字符的内容，如数字的字符串形式
+     */
+    void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeByte((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * 输出带引号并转义的字符串
+     */
+    void writeString(CharSequence value) throws IOException {
+        writeByte((byte) '"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c < 0x20 || c == '"' || c == '\\') {
+                    writeEscaped(c);
+                } else {
+                    writeByte((byte) c);
+                }
+            } else if (c < 0x800) {
+                writeByte((byte) (0xc0 | c >> 6));
+                writeByte((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte((byte) (0xf0 | codePoint >> 18));
+                writeByte((byte) (0x80 | codePoint >> 12 & 0x3f));
+                writeByte((byte) (0x80 | codePoint >> 6 & 0x3f));
+                writeByte((byte) (0x80 | codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理项
+                writeByte((byte) '?');
+            } else {
+                writeByte((byte) (0xe0 | c >> 12));
+                writeByte((byte) (0x80 | c >> 6 & 0x3f));
+                writeByte((byte) (0x80 | c & 0x3f));
+            }
+        }
+        writeByte((byte) '"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        writeByte((byte) '\\');
+        switch (c) {
+            case '"':
+            case '\\':
+                writeByte((byte) c);
+                break;
+            case '\n':
+                writeByte((byte) 'n');
+                break;
+            case '\r':
+                writeByte((byte) 'r');
+                break;
+            case '\t':
+                writeByte((byte) 't');
+                break;
+            case '\b':
+                writeByte((byte) 'b');
+                break;
+            case '\f':
+                writeByte((byte) 'f');
+                break;
+            default:
+                writeByte((byte) 'u');
+                writeByte((byte) '0');
+                writeByte((byte) '0');
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xf]);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * 把缓冲区中剩余内容写出，并解除与底层流的绑定
+     */
+    void flush() throws IOException {
+        if (position > 0) {
+            flushBuffer();
+        }
+        out.flush();
+        out = null;
+    }
+}
@@ -1,12 +1,28 @@
 package com.fantj.mvc.framework.servlet;
 
-import java.lang.management.GarbageCollectorMXBean;
-import java.lang.management.ManagementFactory;
-import java.util.List;
+import com.fantj.mvc.framework.server.HttpServer;
+import com.fantj.mvc.framework.server.ServerContext;
 
+import java.util.Collections;
+
+/**
+* 独立启动 -- 不依赖 servlet 容器，由内置的 NIO HTTP 服务器运行 DispatcherServlet
+* 参数为配置文件位置，默认 classpath:application.properties，端口等配置见其中的 server 配置项
+* @author JiaoFanTing
+**/
 public class Main {
-    public static void main(String[] args) {
-        List<GarbageCollectorMXBean> list = ManagementFactory.getGarbageCollectorMXBeans();
-        list.stream().forEach(s-> System.out.println(s.getName()));
+
+    private static final String DEFAULT_LOCATION = "classpath:application.properties";
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        String location = args.length > 0 ? args[0] : DEFAULT_LOCATION;
+        DispatcherServlet servlet = new DispatcherServlet();
+        ServerContext context = new ServerContext("dispatcher", Collections.singletonMap(DispatcherServlet.LOCATION, location));
+        servlet.init(context);
+        HttpServer server = new HttpServer(servlet, context, servlet.getConfig());
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "mvc-http-shutdown"));
+        System.out.println("HTTP server started on port " + server.getPort() + " in " + (System.nanoTime() - start) / 1000000 + "ms");
     }
 }
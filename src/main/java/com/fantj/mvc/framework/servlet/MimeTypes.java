@@ -0,0 +1,57 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+* 扩展名到 MIME 类型 -- 静态资源的 Content-Type 与内置服务器的 ServletContext.getMimeType 共用
+* @author JiaoFanTing
+**/
+public final class MimeTypes {
+
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("html", "text/html");
+        TYPES.put("htm", "text/html");
+        TYPES.put("css", "text/css");
+        TYPES.put("js", "application/javascript");
+        TYPES.put("json", "application/json");
+        TYPES.put("txt", "text/plain");
+        TYPES.put("xml", "application/xml");
+        TYPES.put("svg", "image/svg+xml");
+        TYPES.put("map", "application/json");
+        TYPES.put("png", "image/png");
+        TYPES.put("jpg", "image/jpeg");
+        TYPES.put("jpeg", "image/jpeg");
+        TYPES.put("gif", "image/gif");
+        TYPES.put("webp", "image/webp");
+        TYPES.put("ico", "image/x-icon");
+        TYPES.put("woff", "font/woff");
+        TYPES.put("woff2", "font/woff2");
+        TYPES.put("pdf", "application/pdf");
+        TYPES.put("wasm", "application/wasm");
+        TYPES.put("mp4", "video/mp4");
+        TYPES.put("zip", "application/zip");
+    }
+
+    private MimeTypes() {
+    }
+
+    /**
+     * 按文件名的扩展名查找，不认识的扩展名返回 null
+     */
+    public static String of(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? null : TYPES.get(fileName.substring(dot + 1).toLowerCase());
+    }
+
+    /**
+     * 文本类型：需要带上字符集，也值得压缩
+     */
+    static boolean isText(String mimeType) {
+        return mimeType.startsWith("text/") || mimeType.startsWith("application/javascript")
+                || mimeType.startsWith("application/json") || mimeType.startsWith("application/xml")
+                || mimeType.startsWith("image/svg+xml");
+    }
+}
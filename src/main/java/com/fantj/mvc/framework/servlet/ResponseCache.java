@@ -0,0 +1,118 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* 响应缓存 -- 缓存 @Cacheable handler 渲染后的字节
+* 读写都不加锁；超出容量时按 {@link SampledLru} 淘汰最久未访问的（近似 LRU）
+* @author JiaoFanTing
+**/
+public class ResponseCache {
+
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 访问时钟，用于近似 LRU
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 获取缓存，过期的条目视为未命中
+     */
+    Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = clock.incrementAndGet();
+        hits.increment();
+        return entry;
+    }
+
+    Entry put(String key, String contentType, byte[] body, long ttlNanos) {
+        Entry entry = new Entry(contentType, body, System.nanoTime() + ttlNanos);
+        entry.lastAccess = clock.incrementAndGet();
+        entries.put(key, entry);
+        while (entries.size() > maxEntries) {
+            evictOne();
+        }
+        return entry;
+    }
+
+    private void evictOne() {
+        Map.Entry<String, Entry> victim = SampledLru.victim(entries);
+        if (victim != null && entries.remove(victim.getKey()) != null) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 清除某个映射路径下的全部缓存
+     * @param mapping handler 的 @RequestMapping 完整路径
+     */
+    public void invalidate(String mapping) {
+        String prefix = mapping + "?";
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 清除全部缓存
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存条目
+     */
+    static final class Entry extends CachedBody {
+        final String contentType;
+        final long expiresAt;
+        /**
+         * body 的 ETag，放入缓存时计算一次
+         */
+        final String etag;
+
+        Entry(String contentType, byte[] body, long expiresAt) {
+            super(body);
+            this.contentType = contentType;
+            this.expiresAt = expiresAt;
+            this.etag = ETag.format(ETag.hash(body));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.fantj.mvc.framework.servlet;
+
+/**
+* 带状态码的异常 -- 用于 400/404 这类流程控制，默认解析器直接按状态码响应，不记录日志
+* 默认不采集调用栈：高频抛出时 fillInStackTrace 是主要开销；
+* 调试时可以在 application.properties 中设置 controlFlowStackTrace=true 打开
+* @author JiaoFanTing
+**/
+public class ResponseStatusException extends RuntimeException {
+
+    private static volatile boolean captureStackTrace;
+
+    private final int status;
+
+    public ResponseStatusException(int status, String reason) {
+        this(status, reason, null);
+    }
+
+    public ResponseStatusException(int status, String reason, Throwable cause) {
+        super(reason, cause, false, captureStackTrace);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    static void setCaptureStackTrace(boolean captureStackTrace) {
+        ResponseStatusException.captureStackTrace = captureStackTrace;
+    }
+}
@@ -0,0 +1,106 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* 单个路由的请求数、错误数及各阶段耗时
+* @author JiaoFanTing
+**/
+final class RouteMetrics implements RouteMetricsMXBean {
+
+    private final String mapping;
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    /**
+     * 超出并发上限被拒绝的请求数，不计入 requests
+     */
+    final LongAdder rejected = new LongAdder();
+
+    final LatencyHistogram lookup = new LatencyHistogram();
+    final LatencyHistogram binding = new LatencyHistogram();
+    final LatencyHistogram invocation = new LatencyHistogram();
+    final LatencyHistogram render = new LatencyHistogram();
+    final LatencyHistogram total = new LatencyHistogram();
+
+    RouteMetrics(String mapping) {
+        this.mapping = mapping;
+    }
+
+    @Override
+    public String getMapping() {
+        return mapping;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public PhaseStats getLookup() {
+        return stats(lookup);
+    }
+
+    @Override
+    public PhaseStats getBinding() {
+        return stats(binding);
+    }
+
+    @Override
+    public PhaseStats getInvocation() {
+        return stats(invocation);
+    }
+
+    @Override
+    public PhaseStats getRender() {
+        return stats(render);
+    }
+
+    @Override
+    public PhaseStats getTotal() {
+        return stats(total);
+    }
+
+    static PhaseStats stats(LatencyHistogram histogram) {
+        return new PhaseStats(histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+                histogram.getPercentile(90), histogram.getPercentile(99), histogram.getMax());
+    }
+
+    /**
+     * 以 json 输出统计信息
+     */
+    void writeJson(StringBuilder out) {
+        out.append("{\"mapping\":\"").append(mapping.replace("\\", "\\\\").replace("\"", "\\\""))
+                .append("\",\"requests\":").append(getRequestCount())
+                .append(",\"errors\":").append(getErrorCount())
+                .append(",\"rejected\":").append(getRejectedCount());
+        writePhase(out, "lookup", lookup);
+        writePhase(out, "binding", binding);
+        writePhase(out, "invocation", invocation);
+        writePhase(out, "render", render);
+        writePhase(out, "total", total);
+        out.append('}');
+    }
+
+    static void writePhase(StringBuilder out, String name, LatencyHistogram histogram) {
+        out.append(",\"").append(name).append("\":{")
+                .append("\"count\":").append(histogram.getCount())
+                .append(",\"mean\":").append(histogram.getMean())
+                .append(",\"p50\":").append(histogram.getPercentile(50))
+                .append(",\"p90\":").append(histogram.getPercentile(90))
+                .append(",\"p99\":").append(histogram.getPercentile(99))
+                .append(",\"max\":").append(histogram.getMax())
+                .append('}');
+    }
+}
@@ -0,0 +1,92 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.beans.ConstructorProperties;
+
+/**
+* 单个路由的统计信息，通过 JMX 暴露
+* @author JiaoFanTing
+**/
+public interface RouteMetricsMXBean {
+
+    String getMapping();
+
+    long getRequestCount();
+
+    long getErrorCount();
+
+    /**
+     * 超出并发上限被拒绝的请求数
+     */
+    long getRejectedCount();
+
+    /**
+     * 路由查找耗时
+     */
+    PhaseStats getLookup();
+
+    /**
+     * 参数绑定耗时
+     */
+    PhaseStats getBinding();
+
+    /**
+     * handler 方法调用耗时
+     */
+    PhaseStats getInvocation();
+
+    /**
+     * 视图渲染耗时
+     */
+    PhaseStats getRender();
+
+    /**
+     * 整个请求的耗时
+     */
+    PhaseStats getTotal();
+
+    /**
+     * 某个阶段的耗时统计（纳秒）
+     */
+    class PhaseStats {
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+        public PhaseStats(long count, long mean, long p50, long p90, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+* 路由索引 -- 按 "/" 分段的前缀树
+* 纯字面量的路径直接挂在树节点上；含正则元字符的路径挂在其最长字面量前缀对应的节点上，
+* 只有字面量查找失败时才做正则匹配
+* @author JiaoFanTing
+**/
+class RouteTrie<T> {
+
+    private static final String REGEX_META = "\\[](){}*+?^$|";
+
+    private final Node<T> root = new Node<>(null);
+    /**
+     * 纯字面量路径的整体索引，命中时不需要逐段切分 uri
+     */
+    private final Map<String, T> literals = new HashMap<>();
+
+    private boolean empty = true;
+
+    /**
+     * 注册一个路由
+     * @param path 映射路径（可能是正则）
+     * @param value 路由对应的值
+     */
+    void add(String path, T value) {
+        String[] segments = path.split("/", -1);
+        Node<T> node = root;
+        int i = 0;
+        for (; i < segments.length; i++) {
+            if (!isLiteral(segments[i])) {
+                break;
+            }
+            Node<T> parent = node;
+            node = node.children.computeIfAbsent(segments[i], k -> new Node<>(parent));
+        }
+        if (i == segments.length) {
+            // 纯字面量路径，同一路径只保留先注册的
+            if (node.value == null) {
+                node.value = value;
+                literals.put(path, value);
+            }
+        } else {
+            node.patterns.add(new PatternEntry<>(Pattern.compile(path), value));
+        }
+        empty = false;
+    }
+
+    /**
+     * 根据请求路径查找，先整体查字面量路径，再逐段走前缀树，最后按前缀由深到浅做正则兜底
+     */
+    T match(String uri) {
+        T literal = literals.get(uri);
+        if (literal != null) {
+            return literal;
+        }
+        Node<T> node = root;
+        int start = 0;
+        int length = uri.length();
+        while (true) {
+            int end = uri.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            Node<T> child = node.children.get(uri.substring(start, end));
+            if (child == null) {
+                break;
+            }
+            node = child;
+            if (end == length) {
+                if (node.value != null) {
+                    return node.value;
+                }
+                break;
+            }
+            start = end + 1;
+        }
+        // 正则兜底：从最深的前缀开始，沿父节点回溯
+        for (; node != null; node = node.parent) {
+            T value = matchPatterns(node, uri);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    private T matchPatterns(Node<T> node, String uri) {
+        List<PatternEntry<T>> patterns = node.patterns;
+        for (int i = 0, n = patterns.size(); i < n; i++) {
+            PatternEntry<T> entry = patterns.get(i);
+            if (entry.pattern.matcher(uri).matches()) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 判断一个路径分段是否为字面量
+     * "." 在路径中一般指字面量（如 hello.json），只有后面跟着量词时才当作正则
+     */
+    static boolean isLiteral(String segment) {
+        for (int i = 0, n = segment.length(); i < n; i++) {
+            char c = segment.charAt(i);
+            if (REGEX_META.indexOf(c) >= 0) {
+                return false;
+            }
+            if (c == '.' && i + 1 < n && "*+?{".indexOf(segment.charAt(i + 1)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Node<T> {
+        private final Node<T> parent;
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private final List<PatternEntry<T>> patterns = new ArrayList<>(0);
+        private T value;
+
+        Node(Node<T> parent) {
+            this.parent = parent;
+        }
+    }
+
+    private static class PatternEntry<T> {
+        private final Pattern pattern;
+        private final T value;
+
+        PatternEntry(Pattern pattern, T value) {
+            this.pattern = pattern;
+            this.value = value;
+        }
+    }
+}
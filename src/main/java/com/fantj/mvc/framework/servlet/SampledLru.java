@@ -0,0 +1,51 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+* 近似 LRU 淘汰 -- 从随机位置开始采样若干条目，选出其中最久未访问的
+* 不维护访问链表，读写都不加锁，淘汰的开销与容量无关
+* @author JiaoFanTing
+**/
+final class SampledLru {
+
+    /**
+     * 淘汰时的采样数
+     */
+    private static final int EVICTION_SAMPLES = 8;
+    /**
+     * 采样起点的最大偏移
+     */
+    private static final int MAX_SKIP = 256;
+
+    private SampledLru() {
+    }
+
+    /**
+     * 选出要淘汰的条目，缓存为空时返回 null；由调用方移除并更新统计
+     */
+    static <K, V extends CachedBody> Map.Entry<K, V> victim(ConcurrentHashMap<K, V> entries) {
+        int size = entries.size();
+        if (size == 0) {
+            return null;
+        }
+        int skip = ThreadLocalRandom.current().nextInt(Math.min(size, MAX_SKIP));
+        Map.Entry<K, V> victim = null;
+        int sampled = 0;
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        while (it.hasNext() && sampled < EVICTION_SAMPLES) {
+            Map.Entry<K, V> e = it.next();
+            if (skip-- > 0) {
+                continue;
+            }
+            sampled++;
+            if (victim == null || e.getValue().lastAccess < victim.getValue().lastAccess) {
+                victim = e;
+            }
+        }
+        return victim;
+    }
+}
@@ -0,0 +1,443 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* 静态资源 -- 把 url 前缀下的请求映射到配置的目录（staticRoot 以逗号分隔，同名文件以前面的目录为准），不经过模板解析
+* 小文件的内容放在按字节数限制容量的缓存中，超出容量时按 {@link SampledLru} 淘汰最久未访问的；
+* 大文件每次从磁盘发送：容器支持 sendfile 时（如内置服务器）交给容器用 FileChannel.transferTo 零拷贝发送，
+* 否则用 transferTo 写入响应流
+* 支持 Last-Modified / If-Modified-Since 与单个区间的 Range 请求
+* @author JiaoFanTing
+**/
+final class StaticResources {
+
+    /**
+     * Tomcat 的 sendfile 约定：容器声明支持，servlet 给出文件名与区间 [start, end)
+     */
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String RANGE = "Range";
+    private static final String IF_RANGE = "If-Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String BYTES = "bytes=";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    /**
+     * 缓存的文件信息每隔多久重新检查一次是否被修改
+     */
+    private static final long REVALIDATE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * 每个缓存条目除内容外的大致内存占用，只缓存信息的大文件也计入容量
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+    /**
+     * 区间请求不满足时的标记
+     */
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * url 前缀，以 / 开头和结尾
+     */
+    private final String prefix;
+    /**
+     * 按配置顺序排列的目录，绝对路径
+     */
+    private final List<Path> roots = new ArrayList<>();
+    /**
+     * 内容放入缓存的最大文件字节数
+     */
+    private final int maxCachedFileSize;
+    /**
+     * 缓存容量（字节）
+     */
+    private final long capacity;
+
+    private final ConcurrentHashMap<String, Resource> entries = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    /**
+     * 访问时钟，用于近似 LRU
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    StaticResources(ClassLoader classLoader, String prefix, String staticRoots, long capacity, int maxCachedFileSize) {
+        this.prefix = (prefix.startsWith("/") ? "" : "/") + prefix + (prefix.endsWith("/") ? "" : "/");
+        this.capacity = capacity;
+        this.maxCachedFileSize = maxCachedFileSize;
+        for (String name : staticRoots.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            // 先按 classpath 上的目录查找，再按文件系统路径
+            File directory = ViewRegistry.directoryOf(classLoader.getResource(name));
+            if (directory == null && new File(name).isDirectory()) {
+                directory = new File(name);
+            }
+            if (directory == null) {
+                System.err.println("静态资源目录不存在或在 jar 中，忽略: " + name);
+                continue;
+            }
+            roots.add(directory.toPath().toAbsolutePath().normalize());
+        }
+    }
+
+    String getPrefix() {
+        return prefix;
+    }
+
+    List<Path> getRoots() {
+        return roots;
+    }
+
+    boolean matches(String requestURI) {
+        return requestURI.startsWith(prefix);
+    }
+
+    /**
+     * 输出静态文件；只处理 GET/HEAD，文件不存在时返回 false，交给 handler 处理
+     */
+    boolean serve(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String method = req.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            return false;
+        }
+        Resource resource = lookup(req.getRequestURI().substring(prefix.length()));
+        if (resource == null) {
+            return false;
+        }
+        resp.setHeader(LAST_MODIFIED, resource.lastModified);
+        if (notModified(req, resource)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        resp.setContentType(resource.contentType);
+        String range = req.getHeader(RANGE);
+        if (resp instanceof CompressingResponse) {
+            // 缓存中的文本整体压缩，压缩结果随条目缓存；区间与大文件按原始字节发送
+            CompressingResponse compressing = (CompressingResponse) resp;
+            if (range == null && resource.body != null && resource.compressible && compressing.accepts(resource.length)
+                    && compressing.writeEncoded(resource.compressed(compressing.encoding()))) {
+                return true;
+            }
+            resp = (HttpServletResponse) compressing.getResponse();
+        }
+        resp.setHeader(ACCEPT_RANGES, "bytes");
+        long start = 0;
+        long end = resource.length;
+        if (range != null && rangeApplies(req, resource)) {
+            long[] bounds = parseRange(range, resource.length);
+            if (bounds == UNSATISFIABLE) {
+                resp.setHeader(CONTENT_RANGE, "bytes */" + resource.length);
+                ErrorResponses.write(resp, HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return true;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader(CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + resource.length);
+            }
+        }
+        resp.setContentLengthLong(end - start);
+        if (resource.body != null) {
+            resp.getOutputStream().write(resource.body, (int) start, (int) (end - start));
+            return true;
+        }
+        if (head) {
+            return true;
+        }
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            req.setAttribute(SENDFILE_FILENAME, resource.file.toString());
+            req.setAttribute(SENDFILE_START, start);
+            req.setAttribute(SENDFILE_END, end);
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(resource.file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(resp.getOutputStream());
+            while (start < end) {
+                long n = channel.transferTo(start, end - start, out);
+                if (n <= 0) {
+                    // 文件被截短
+                    break;
+                }
+                start += n;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * If-Modified-Since 不早于文件的修改时间（按秒）；客户端通常原样带回 Last-Modified，先按字符串比较
+     */
+    private static boolean notModified(HttpServletRequest req, Resource resource) {
+        String since = req.getHeader(IF_MODIFIED_SINCE);
+        if (since == null) {
+            return false;
+        }
+        if (since.equals(resource.lastModified)) {
+            return true;
+        }
+        try {
+            long date = req.getDateHeader(IF_MODIFIED_SINCE);
+            return date >= 0 && date >= resource.lastModifiedMillis / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 没有 If-Range，或 If-Range 与当前的 Last-Modified 相同时才按区间响应，否则返回整个文件
+     */
+    private static boolean rangeApplies(HttpServletRequest req, Resource resource) {
+        String ifRange = req.getHeader(IF_RANGE);
+        return ifRange == null || ifRange.equals(resource.lastModified);
+    }
+
+    /**
+     * 解析单个区间 bytes=a-b / bytes=a- / bytes=-n，返回 [start, end)
+     * 格式不对或有多个区间时返回 null（按整个文件响应），区间超出文件时返回 {@link #UNSATISFIABLE}
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.regionMatches(true, 0, BYTES, 0, BYTES.length()) || range.indexOf(',') >= 0) {
+            return null;
+        }
+        int dash = range.indexOf('-', BYTES.length());
+        if (dash < 0) {
+            return null;
+        }
+        String first = range.substring(BYTES.length(), dash).trim();
+        String last = range.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = parseLength(last);
+                if (suffix == 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[]{Math.max(0, length - suffix), length};
+            }
+            long start = parseLength(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : parseLength(last);
+            if (end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{start, Math.min(end, length - 1) + 1};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long parseLength(String value) {
+        if (value.charAt(0) == '+') {
+            throw new NumberFormatException(value);
+        }
+        long n = Long.parseLong(value);
+        if (n < 0) {
+            throw new NumberFormatException(value);
+        }
+        return n;
+    }
+
+    /**
+     * 按相对路径查找文件，缓存的条目超过检查间隔后重新读取文件信息
+     */
+    private Resource lookup(String path) throws IOException {
+        Resource resource = entries.get(path);
+        long now = System.nanoTime();
+        if (resource != null) {
+            if (now - resource.checkedAt < REVALIDATE_NANOS) {
+                resource.lastAccess = clock.incrementAndGet();
+                hits.increment();
+                return resource;
+            }
+            Resource current = revalidate(resource, now);
+            if (current != null) {
+                resource.lastAccess = clock.incrementAndGet();
+                hits.increment();
+                return current;
+            }
+            remove(path, resource);
+        }
+        misses.increment();
+        resource = load(path, now);
+        if (resource != null) {
+            put(path, resource);
+        }
+        return resource;
+    }
+
+    /**
+     * 文件没有变化时更新检查时间并返回原条目，已变化或被删除时返回 null
+     */
+    private static Resource revalidate(Resource resource, long now) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resource.file, BasicFileAttributes.class);
+            if (attributes.isRegularFile() && attributes.size() == resource.length
+                    && attributes.lastModifiedTime().toMillis() == resource.lastModifiedMillis) {
+                resource.checkedAt = now;
+                return resource;
+            }
+        } catch (IOException e) {
+            // 按已删除处理
+        }
+        return null;
+    }
+
+    /**
+     * 按目录顺序查找文件，小文件读入内存；路径越出目录或不是普通文件时返回 null
+     */
+    private Resource load(String path, long now) throws IOException {
+        String relative = decode(path);
+        if (relative == null || relative.isEmpty() || relative.indexOf('\0') >= 0 || relative.indexOf('\\') >= 0) {
+            return null;
+        }
+        for (Path root : roots) {
+            Path file = root.resolve(relative).normalize();
+            if (!file.startsWith(root)) {
+                return null;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            if (!attributes.isRegularFile()) {
+                continue;
+            }
+            byte[] content = null;
+            if (attributes.size() <= maxCachedFileSize) {
+                content = Files.readAllBytes(file);
+            }
+            return new Resource(file, contentTypeOf(file.getFileName().toString()), content,
+                    content == null ? attributes.size() : content.length, attributes.lastModifiedTime().toMillis(), now);
+        }
+        return null;
+    }
+
+    /**
+     * 请求路径中的百分号转义按 UTF-8 解码，'+' 在路径中不是空格；转义不完整时返回 null
+     */
+    private static String decode(String path) {
+        if (path.indexOf('%') < 0) {
+            return path;
+        }
+        try {
+            return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String contentTypeOf(String name) {
+        String mimeType = MimeTypes.of(name);
+        if (mimeType == null) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+        return MimeTypes.isText(mimeType) ? mimeType + ";charset=" + Template.CHARSET.name() : mimeType;
+    }
+
+    private void put(String path, Resource resource) {
+        resource.lastAccess = clock.incrementAndGet();
+        Resource previous = entries.put(path, resource);
+        weight.addAndGet(resource.weight() - (previous == null ? 0 : previous.weight()));
+        while (weight.get() > capacity && !entries.isEmpty()) {
+            evictOne();
+        }
+    }
+
+    private void remove(String path, Resource resource) {
+        if (entries.remove(path, resource)) {
+            weight.addAndGet(-resource.weight());
+        }
+    }
+
+    private void evictOne() {
+        Map.Entry<String, Resource> victim = SampledLru.victim(entries);
+        if (victim != null && entries.remove(victim.getKey(), victim.getValue())) {
+            weight.addAndGet(-victim.getValue().weight());
+            evictions.increment();
+        }
+    }
+
+    void writeJson(StringBuilder out) {
+        out.append("{\"prefix\":\"").append(prefix)
+                .append("\",\"entries\":").append(entries.size())
+                .append(",\"bytes\":").append(weight.get())
+                .append(",\"hits\":").append(hits.sum())
+                .append(",\"misses\":").append(misses.sum())
+                .append(",\"evictions\":").append(evictions.sum())
+                .append('}');
+    }
+
+    /**
+     * 一个静态文件：大文件只缓存信息，body 为 null
+     */
+    static final class Resource extends CachedBody {
+        final Path file;
+        final String contentType;
+        final long length;
+        final long lastModifiedMillis;
+        /**
+         * 预先格式化的 Last-Modified 响应头
+         */
+        final String lastModified;
+        final boolean compressible;
+        volatile long checkedAt;
+
+        Resource(Path file, String contentType, byte[] body, long length, long lastModifiedMillis, long checkedAt) {
+            super(body);
+            this.file = file;
+            this.contentType = contentType;
+            this.length = length;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.lastModified = HTTP_DATE.format(Instant.ofEpochMilli(lastModifiedMillis));
+            this.compressible = MimeTypes.isText(contentType);
+            this.checkedAt = checkedAt;
+        }
+
+        long weight() {
+            return ENTRY_OVERHEAD + (body == null ? 0 : body.length);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+* 预编译模板 -- 启动时把模板解析成 字面量/占位符 片段列表，渲染时只做一次顺序拼接
+* @author JiaoFanTing
+**/
+final class Template {
+
+    static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final String OPEN = "${";
+    private static final char CLOSE = '}';
+    /**
+     * 不短于该长度的字面量在编译时预压缩；更短的单独压缩得不偿失，请求时与占位符的值一起压缩
+     */
+    private static final int PRECOMPRESS_LENGTH = 512;
+    /**
+     * DEFLATE 窗口大小，字典超过的部分没有用
+     */
+    private static final int MAX_DICTIONARY = 32 * 1024;
+
+    /**
+     * 片段列表
+     */
+    private final Segment[] segments;
+    /**
+     * 没有占位符的模板，输出固定，哈希在编译时算好
+     */
+    private final boolean constant;
+    private final long constantHash;
+    /**
+     * 字面量（含占位符的原始文本）的总字节数，用于判断是否值得压缩
+     */
+    private final long literalLength;
+
+    private Template(Segment[] segments) {
+        this.segments = segments;
+        boolean constant = true;
+        long hash = ETag.seed();
+        long literalLength = 0;
+        for (Segment segment : segments) {
+            constant &= segment.key == null;
+            hash = ETag.combine(hash, segment.hash);
+            if (segment.key == null) {
+                literalLength += segment.bytes.length;
+            }
+        }
+        this.constant = constant;
+        this.constantHash = hash;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * 读取模板文件并编译
+     */
+    static Template compile(File file) throws IOException {
+        return compile(new String(Files.readAllBytes(file.toPath()), CHARSET));
+    }
+
+    /**
+     * 编译模板内容：${key} 为占位符，其余为字面量
+     */
+    static Template compile(String source) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        int length = source.length();
+        while (pos < length) {
+            int open = source.indexOf(OPEN, pos);
+            if (open < 0) {
+                literal.append(source, pos, length);
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            // 占位符不能为空，也不能跨行
+            if (close < 0 || close == open + OPEN.length() || containsLineBreak(source, open, close)) {
+                literal.append(source, pos, open + OPEN.length());
+                pos = open + OPEN.length();
+                continue;
+            }
+            literal.append(source, pos, open);
+            if (literal.length() > 0) {
+                segments.add(Segment.literal(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(Segment.placeholder(source.substring(open + OPEN.length(), close)));
+            pos = close + 1;
+        }
+        if (literal.length() > 0) {
+            segments.add(Segment.literal(literal.toString()));
+        }
+        return new Template(segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * 渲染到 out 中，model 中没有的 key 原样保留 ${key}
+     */
+    void render(Map<String, Object> model, StringBuilder out) {
+        if (model == null) {
+            model = Collections.emptyMap();
+        }
+        for (Segment segment : segments) {
+            if (segment.key == null) {
+                out.append(segment.text);
+                continue;
+            }
+            Object value = model.get(segment.key);
+            if (value == null) {
+                out.append(segment.text);
+            } else {
+                out.append(value);
+            }
+        }
+    }
+
+    /**
+     * 流式渲染到字节流：字面量直接写预编码的字节，只有占位符的值需要编码
+     */
+    void render(Map<String, Object> model, OutputStream out) throws IOException {
+        if (model == null) {
+            model = Collections.emptyMap();
+        }
+        DispatchBuffers buffers = null;
+        for (Segment segment : segments) {
+            if (segment.key == null) {
+                out.write(segment.bytes);
+                continue;
+            }
+            Object value = model.get(segment.key);
+            if (value == null) {
+                out.write(segment.bytes);
+            } else {
+                if (buffers == null) {
+                    buffers = DispatchBuffers.current();
+                }
+                // 先编码，缓冲区可能在编码时扩容
+                int count = encode(value, buffers);
+                out.write(buffers.bytes(), 0, count);
+            }
+        }
+    }
+
+    /**
+     * 流式渲染到字符流，用于 response 已经拿过 Writer 的情况
+     */
+    void render(Map<String, Object> model, Writer out) throws IOException {
+        if (model == null) {
+            model = Collections.emptyMap();
+        }
+        for (Segment segment : segments) {
+            if (segment.key == null) {
+                out.write(segment.text);
+                continue;
+            }
+            Object value = model.get(segment.key);
+            out.write(value == null ? segment.text : String.valueOf(value));
+        }
+    }
+
+    /**
+     * 渲染并压缩，输出完整的 gzip/deflate 数据：
+     * 较长的字面量在编译时压缩成独立且按字节对齐的块，请求时原样写出，校验和用预先算好的值合并；
+     * 其余的短字面量与占位符的值一起交给一个 Deflater，并以前一个预压缩块为字典，保留跨片段的重复
+     */
+    void renderCompressed(Map<String, Object> model, ContentEncoding encoding, OutputStream out) throws IOException {
+        if (model == null) {
+            model = Collections.emptyMap();
+        }
+        encoding.writeHeader(out);
+        int checksum = encoding.initialChecksum;
+        long length = 0;
+        Deflater deflater = null;
+        // deflater 中有未刷出的数据
+        boolean pending = false;
+        // 最近一个预压缩片段，作为后面动态部分的字典
+        byte[] dictionary = null;
+        DispatchBuffers buffers = DispatchBuffers.current();
+        try {
+            for (Segment segment : segments) {
+                Object value = segment.key == null ? null : model.get(segment.key);
+                byte[] bytes;
+                int count;
+                if (value == null) {
+                    bytes = segment.bytes;
+                    count = bytes.length;
+                    checksum = encoding == ContentEncoding.GZIP
+                            ? Checksums.crc32Combine(checksum, segment.crc32, segment.crc32Shift)
+                            : Checksums.adler32Combine(checksum, segment.adler32, bytes.length);
+                    length += bytes.length;
+                    if (segment.deflated != null) {
+                        if (pending) {
+                            Compression.deflate(deflater, bytes, 0, 0, Deflater.SYNC_FLUSH, out);
+                            pending = false;
+                        }
+                        out.write(segment.deflated);
+                        dictionary = bytes;
+                        continue;
+                    }
+                } else {
+                    count = encode(value, buffers);
+                    bytes = buffers.bytes();
+                    checksum = encoding.update(checksum, bytes, 0, count);
+                    length += count;
+                }
+                if (count == 0) {
+                    continue;
+                }
+                if (!pending) {
+                    if (deflater == null) {
+                        deflater = Compression.borrow();
+                    } else {
+                        // 中间插入了预压缩块，之前的压缩状态与解压端的窗口已对不上
+                        deflater.reset();
+                    }
+                    if (dictionary != null) {
+                        int size = Math.min(dictionary.length, MAX_DICTIONARY);
+                        deflater.setDictionary(dictionary, dictionary.length - size, size);
+                    }
+                    pending = true;
+                }
+                Compression.deflate(deflater, bytes, 0, count, Deflater.NO_FLUSH, out);
+            }
+            if (pending) {
+                Compression.finish(deflater, out);
+            } else {
+                Compression.writeFinalBlock(out);
+            }
+        } finally {
+            if (deflater != null) {
+                Compression.release(deflater);
+            }
+        }
+        encoding.writeTrailer(out, checksum, length);
+    }
+
+    /**
+     * 把占位符的值编码到 buffers 中，返回字节数；字符串与整数不生成中间对象
+     */
+    private static int encode(Object value, DispatchBuffers buffers) {
+        if (value instanceof CharSequence) {
+            return buffers.encode((CharSequence) value);
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return buffers.encode(((Number) value).longValue());
+        }
+        return buffers.encode(String.valueOf(value));
+    }
+
+    long literalLength() {
+        return literalLength;
+    }
+
+    /**
+     * 输出内容的哈希，与渲染结果一一对应但不需要真正渲染：
+     * 字面量使用编译时算好的哈希，只有占位符的值需要计算
+     */
+    long hash(Map<String, Object> model) {
+        if (constant) {
+            return constantHash;
+        }
+        if (model == null) {
+            model = Collections.emptyMap();
+        }
+        long hash = ETag.seed();
+        for (Segment segment : segments) {
+            Object value = segment.key == null ? null : model.get(segment.key);
+            hash = ETag.combine(hash, value == null ? segment.hash : ETag.hash(String.valueOf(value)));
+        }
+        return hash;
+    }
+
+    private static boolean containsLineBreak(String source, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 模板片段
+     */
+    private static final class Segment {
+        /**
+         * 字面量内容；占位符时为原始的 ${key}
+         */
+        private final String text;
+        /**
+         * 占位符的 key，字面量时为 null
+         */
+        private final String key;
+        /**
+         * text 预编码后的字节
+         */
+        private final byte[] bytes;
+        /**
+         * text 的哈希
+         */
+        private final long hash;
+        /**
+         * bytes 预压缩后的 DEFLATE 块，较短的字面量与占位符为 null；以及压缩输出时合并校验和所需的值
+         */
+        private final byte[] deflated;
+        private final int crc32;
+        private final int[] crc32Shift;
+        private final int adler32;
+
+        private Segment(String text, String key) {
+            this.text = text;
+            this.key = key;
+            this.bytes = text.getBytes(CHARSET);
+            this.hash = ETag.hash(text);
+            this.deflated = key == null && bytes.length >= PRECOMPRESS_LENGTH ? Compression.deflateBlocks(bytes) : null;
+            this.crc32 = Checksums.crc32(0, bytes, 0, bytes.length);
+            this.crc32Shift = Checksums.crc32Shift(bytes.length);
+            this.adler32 = Checksums.adler32(1, bytes, 0, bytes.length);
+        }
+
+        static Segment literal(String text) {
+            return new Segment(text, null);
+        }
+
+        static Segment placeholder(String key) {
+            return new Segment(OPEN + key + CLOSE, key);
+        }
+    }
+}
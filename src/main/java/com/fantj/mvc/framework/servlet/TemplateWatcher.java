@@ -0,0 +1,107 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+* 模板热加载 -- 后台线程监听 templateRoot，文件新增或修改时重新编译，删除时移除
+* 请求线程只读取已编译的模板，不接触文件
+* @author JiaoFanTing
+**/
+final class TemplateWatcher implements Runnable, Closeable {
+
+    /**
+     * 模板变化的回调，在监听线程上执行
+     */
+    interface Listener {
+
+        void changed(String name, Template template);
+
+        void removed(String name);
+    }
+
+    private final Path root;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    TemplateWatcher(Path root, Listener listener) throws IOException {
+        this.root = root;
+        this.listener = listener;
+        this.watchService = root.getFileSystem().newWatchService();
+        root.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        this.thread = new Thread(this, "mvc-template-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // 事件丢失，重新编译全部模板
+                        reloadAll();
+                        continue;
+                    }
+                    Path file = root.resolve((Path) event.context());
+                    if (event.kind() == ENTRY_DELETE) {
+                        listener.removed(file.getFileName().toString());
+                    } else {
+                        reload(file);
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("模板目录已不可用，停止热加载: " + root);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // close() 结束监听
+        }
+    }
+
+    private void reloadAll() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                reload(file);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void reload(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            listener.changed(file.getFileName().toString(), Template.compile(file.toFile()));
+        } catch (IOException e) {
+            // 文件可能还在写入，保留旧版本，等下一次修改事件
+            System.err.println("模板重新编译失败: " + file + ", " + e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
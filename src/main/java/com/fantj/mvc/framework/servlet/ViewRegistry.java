@@ -0,0 +1,223 @@
+package com.fantj.mvc.framework.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* 视图索引 -- 视图名到 ViewResolver 的不可变哈希表，查找为 O(1)
+* 支持多个模板目录（templateRoot 以逗号分隔），同名模板以排在前面的目录为准；
+* 索引中没有的视图会按目录顺序到 classpath 上再找一次（如 jar 中的模板），
+* 仍然找不到的视图名记入负缓存，之后不再查找
+* @author JiaoFanTing
+**/
+final class ViewRegistry implements Closeable {
+
+    /**
+     * 负缓存上限，超过后清空，防止视图名来自请求参数时无限增长
+     */
+    private static final int MAX_MISSING = 1024;
+
+    private final ClassLoader classLoader;
+    /**
+     * 按配置顺序排列的模板目录
+     */
+    private final List<Root> roots = new ArrayList<>();
+    /**
+     * 合并后的索引，只读快照，模板变化时整体替换
+     */
+    private volatile Map<String, ViewResolver> index = Collections.emptyMap();
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+    private final List<TemplateWatcher> watchers = new ArrayList<>();
+
+    ViewRegistry(ClassLoader classLoader, String templateRoots) throws IOException {
+        this.classLoader = classLoader;
+        for (String name : templateRoots.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            Root root = new Root(name, directoryOf(classLoader.getResource(name)));
+            if (root.directory != null) {
+                File[] files = root.directory.listFiles();
+                for (File file : files == null ? new File[0] : files) {
+                    // 启动时一次性编译模板，请求时不再读文件
+                    if (file.isFile()) {
+                        root.templates.put(file.getName(), new ViewResolver(file.getName(), Template.compile(file)));
+                    }
+                }
+            }
+            roots.add(root);
+        }
+        rebuild();
+    }
+
+    /**
+     * classpath 上的目录对应的文件系统目录，在 jar 中或不是目录时返回 null
+     */
+    static File directoryOf(URL url) {
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.isDirectory() ? file : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按视图名查找，找不到返回 null
+     */
+    ViewResolver get(String viewName) {
+        if (viewName == null) {
+            return null;
+        }
+        ViewResolver viewResolver = index.get(viewName);
+        if (viewResolver != null || missing.contains(viewName)) {
+            return viewResolver;
+        }
+        viewResolver = probe(viewName);
+        if (viewResolver == null) {
+            if (missing.size() >= MAX_MISSING) {
+                missing.clear();
+            }
+            missing.add(viewName);
+        }
+        return viewResolver;
+    }
+
+    /**
+     * 索引中没有时按目录顺序到 classpath 上查找并编译
+     */
+    private ViewResolver probe(String viewName) {
+        if (viewName.isEmpty() || viewName.contains("..") || viewName.startsWith("/")) {
+            return null;
+        }
+        for (Root root : roots) {
+            URL url = classLoader.getResource(root.name + "/" + viewName);
+            if (url == null) {
+                continue;
+            }
+            try (InputStream in = url.openStream()) {
+                ByteArrayOutputStream source = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    source.write(buffer, 0, read);
+                }
+                ViewResolver viewResolver = new ViewResolver(viewName, Template.compile(new String(source.toByteArray(), Template.CHARSET)));
+                update(root, viewName, viewResolver);
+                return viewResolver;
+            } catch (IOException e) {
+                System.err.println("模板读取失败: " + url + ", " + e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 替换某个目录下的一个模板后重建索引；viewResolver 为 null 表示删除
+     */
+    private synchronized void update(Root root, String viewName, ViewResolver viewResolver) {
+        Map<String, ViewResolver> templates = new HashMap<>(root.templates);
+        if (viewResolver == null) {
+            templates.remove(viewName);
+        } else {
+            templates.put(viewName, viewResolver);
+        }
+        root.templates = templates;
+        rebuild();
+        missing.clear();
+    }
+
+    /**
+     * 合并各目录的模板，倒序放入使前面的目录覆盖后面的
+     */
+    private void rebuild() {
+        Map<String, ViewResolver> merged = new HashMap<>();
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            merged.putAll(roots.get(i).templates);
+        }
+        index = Collections.unmodifiableMap(merged);
+    }
+
+    /**
+     * 监听各个模板目录，模板变化后调用 onChange
+     */
+    void watch(Runnable onChange) {
+        for (Root root : roots) {
+            if (root.directory == null) {
+                continue;
+            }
+            try {
+                TemplateWatcher watcher = new TemplateWatcher(root.directory.toPath(), new TemplateWatcher.Listener() {
+                    @Override
+                    public void changed(String name, Template template) {
+                        update(root, name, new ViewResolver(name, template));
+                        onChange.run();
+                        System.out.println("Template reloaded: " + root.name + "/" + name);
+                    }
+
+                    @Override
+                    public void removed(String name) {
+                        update(root, name, null);
+                        onChange.run();
+                        System.out.println("Template removed: " + root.name + "/" + name);
+                    }
+                });
+                watcher.start();
+                watchers.add(watcher);
+            } catch (IOException e) {
+                System.err.println("无法监听模板目录，不启用热加载: " + root.directory + ", " + e);
+            }
+        }
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (TemplateWatcher watcher : watchers) {
+            watcher.close();
+        }
+        watchers.clear();
+    }
+
+    /**
+     * 一个模板目录
+     */
+    private static final class Root {
+        /**
+         * classpath 上的目录名
+         */
+        final String name;
+        /**
+         * 文件系统上的目录，在 jar 中时为 null
+         */
+        final File directory;
+        /**
+         * 该目录下的模板，只读快照
+         */
+        volatile Map<String, ViewResolver> templates = new HashMap<>();
+
+        Root(String name, File directory) {
+            this.name = name;
+            this.directory = directory;
+        }
+    }
+}
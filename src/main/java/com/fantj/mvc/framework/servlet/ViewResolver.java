@@ -0,0 +1,58 @@
+package com.fantj.mvc.framework.servlet;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+* 视图解析器 -- 一个视图名对应一个预编译模板
+* @author JiaoFanTing
+**/
+final class ViewResolver {
+    static final String CONTENT_TYPE = "text/html;charset=" + Template.CHARSET.name();
+
+    final String viewName;
+    final Template template;
+
+    ViewResolver(String viewName, Template template) {
+        this.viewName = viewName;
+        this.template = template;
+    }
+
+    /**
+     * 渲染为字节，用于缓存
+     */
+    public byte[] renderBytes(ModelAndView mv) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        template.render(mv.getModel(), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 流式渲染到 response，不在内存中拼出整个页面
+     * 客户端接受压缩且模板足够大时，输出预压缩的字面量，只压缩占位符的值
+     */
+    public void render(ModelAndView mv, HttpServletResponse resp) throws IOException {
+        if (resp.getContentType() == null) {
+            resp.setContentType(CONTENT_TYPE);
+        }
+        if (resp instanceof CompressingResponse) {
+            CompressingResponse compressing = (CompressingResponse) resp;
+            OutputStream encoded = compressing.accepts(template.literalLength()) ? compressing.startEncoded() : null;
+            if (encoded != null) {
+                template.renderCompressed(mv.getModel(), compressing.encoding(), encoded);
+                return;
+            }
+        }
+        OutputStream out;
+        try {
+            out = resp.getOutputStream();
+        } catch (IllegalStateException e) {
+            // handler 已经使用过 Writer，只能按字符写
+            template.render(mv.getModel(), resp.getWriter());
+            return;
+        }
+        template.render(mv.getModel(), out);
+    }
+}
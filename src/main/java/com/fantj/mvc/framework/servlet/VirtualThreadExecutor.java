@@ -0,0 +1,201 @@
+package com.fantj.mvc.framework.servlet;
+
+import com.fantj.mvc.framework.servlet.RouteMetricsMXBean.PhaseStats;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+* @VirtualThread handler 的执行器
+* JDK 21+ 上每个任务一个虚拟线程，并通过 JFR 的 jdk.VirtualThreadPinned 事件统计钉住情况；
+* 更早的 JDK 上退化为有界的平台线程池，队列满时拒绝
+* 项目以 Java 8 编译，虚拟线程与 JFR 相关的 API 都通过反射获取
+* @author JiaoFanTing
+**/
+final class VirtualThreadExecutor implements Executor, VirtualThreadExecutorMXBean {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final ExecutorService delegate;
+    private final boolean virtual;
+    /**
+     * 平台线程池模式下的线程池，虚拟线程模式下为 null
+     */
+    private final ThreadPoolExecutor fallback;
+    /**
+     * JFR 事件流，无法开启时为 null
+     */
+    private final AutoCloseable pinnedEvents;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram pinned = new LatencyHistogram();
+
+    /**
+     * @param poolSize 平台线程池的线程数
+     * @param queueSize 平台线程池的队列长度
+     * @param pinnedThresholdMillis 超过该时长的钉住才记录
+     */
+    VirtualThreadExecutor(int poolSize, int queueSize, long pinnedThresholdMillis) {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor != null) {
+            this.delegate = executor;
+            this.virtual = true;
+            this.fallback = null;
+            this.pinnedEvents = openPinnedEvents(pinnedThresholdMillis);
+        } else {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueSize), r -> {
+                Thread thread = new Thread(r, "mvc-virtual-fallback-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            this.delegate = pool;
+            this.virtual = false;
+            this.fallback = pool;
+            this.pinnedEvents = null;
+        }
+    }
+
+    /**
+     * 等价于 Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mvc-virtual-", 0).factory())
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "mvc-virtual-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 通过 jdk.jfr.consumer.RecordingStream 订阅钉住事件，JFR 不可用时返回 null
+     */
+    private AutoCloseable openPinnedEvents(long thresholdMillis) {
+        try {
+            Class<?> streamType = Class.forName("jdk.jfr.consumer.RecordingStream");
+            Object stream = streamType.getConstructor().newInstance();
+            Object settings = streamType.getMethod("enable", String.class).invoke(stream, PINNED_EVENT);
+            Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold", Duration.class)
+                    .invoke(settings, Duration.ofMillis(thresholdMillis));
+            Method getDuration = Class.forName("jdk.jfr.consumer.RecordedEvent").getMethod("getDuration");
+            Consumer<Object> onPinned = event -> {
+                try {
+                    pinned.record(((Duration) getDuration.invoke(event)).toNanos());
+                } catch (ReflectiveOperationException e) {
+                    pinned.record(0);
+                }
+            };
+            streamType.getMethod("onEvent", String.class, Consumer.class).invoke(stream, PINNED_EVENT, onPinned);
+            streamType.getMethod("startAsync").invoke(stream);
+            return (AutoCloseable) stream;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("无法开启虚拟线程钉住统计: " + e);
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long submittedAt = System.nanoTime();
+        try {
+            delegate.execute(() -> {
+                queueWait.record(System.nanoTime() - submittedAt);
+                active.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+            submitted.increment();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    void shutdown() {
+        delegate.shutdown();
+        if (pinnedEvents != null) {
+            try {
+                pinnedEvents.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return fallback == null ? 0 : fallback.getQueue().size();
+    }
+
+    @Override
+    public PhaseStats getQueueWait() {
+        return RouteMetrics.stats(queueWait);
+    }
+
+    @Override
+    public long getPinnedCount() {
+        return pinned.getCount();
+    }
+
+    @Override
+    public PhaseStats getPinned() {
+        return RouteMetrics.stats(pinned);
+    }
+
+    /**
+     * 以 json 输出统计信息
+     */
+    void writeJson(StringBuilder out) {
+        out.append("{\"virtual\":").append(virtual)
+                .append(",\"submitted\":").append(getSubmittedCount())
+                .append(",\"rejected\":").append(getRejectedCount())
+                .append(",\"active\":").append(getActiveCount())
+                .append(",\"queued\":").append(getQueueSize());
+        RouteMetrics.writePhase(out, "queueWait", queueWait);
+        RouteMetrics.writePhase(out, "pinned", pinned);
+        out.append('}');
+    }
+}
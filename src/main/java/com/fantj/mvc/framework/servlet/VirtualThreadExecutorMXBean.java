@@ -0,0 +1,44 @@
+package com.fantj.mvc.framework.servlet;
+
+import com.fantj.mvc.framework.servlet.RouteMetricsMXBean.PhaseStats;
+
+/**
+* 虚拟线程执行器的统计信息，通过 JMX 暴露
+* @author JiaoFanTing
+**/
+public interface VirtualThreadExecutorMXBean {
+
+    /**
+     * 是否运行在虚拟线程上，false 表示使用的是平台线程池
+     */
+    boolean isVirtual();
+
+    long getSubmittedCount();
+
+    long getRejectedCount();
+
+    /**
+     * 正在执行的任务数
+     */
+    long getActiveCount();
+
+    /**
+     * 平台线程池中排队的任务数，虚拟线程模式下为 0
+     */
+    int getQueueSize();
+
+    /**
+     * 任务从提交到开始执行的等待时间
+     */
+    PhaseStats getQueueWait();
+
+    /**
+     * 虚拟线程被钉住（pinned）在载体线程上的次数
+     */
+    long getPinnedCount();
+
+    /**
+     * 虚拟线程被钉住的时长
+     */
+    PhaseStats getPinned();
+}
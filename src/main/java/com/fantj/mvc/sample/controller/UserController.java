@@ -1,14 +1,18 @@
 package com.fantj.mvc.sample.controller;
 
 import com.fantj.mvc.framework.annotation.Autowired;
+import com.fantj.mvc.framework.annotation.Cacheable;
 import com.fantj.mvc.framework.annotation.Controller;
 import com.fantj.mvc.framework.annotation.RequestMapping;
+import com.fantj.mvc.framework.annotation.ResponseBody;
+import com.fantj.mvc.framework.annotation.VirtualThread;
 import com.fantj.mvc.framework.servlet.ModelAndView;
 import com.fantj.mvc.sample.pojo.User;
 import com.fantj.mvc.sample.service.UserService;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @RequestMapping("/web")
@@ -17,6 +21,7 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Cacheable(ttl = 10)
     @RequestMapping("/hello.json")
     public ModelAndView hello(){
         User user = userService.getUser();
@@ -28,4 +33,35 @@ public class UserController {
         mv.setModel(map);
         return mv;
     }
+
+    /**
+     * 异步 handler：返回 CompletableFuture，完成后再渲染视图
+     */
+    @RequestMapping("/helloAsync.json")
+    public CompletableFuture<ModelAndView> helloAsync(){
+        return CompletableFuture.supplyAsync(userService::getUser).thenApply(user -> {
+            ModelAndView mv = new ModelAndView();
+            Map<String, Object> map = new HashMap<>();
+            map.put("name", user.getName());
+            map.put("addr", user.getAddr());
+            mv.setView("template.fantj");
+            mv.setModel(map);
+            return mv;
+        });
+    }
+
+    /**
+     * 在虚拟线程上调用，适合 service 中有阻塞调用的 handler
+     */
+    @VirtualThread
+    @RequestMapping("/helloVirtual.json")
+    public ModelAndView helloVirtual(){
+        return hello();
+    }
+
+    @ResponseBody
+    @RequestMapping("/user.json")
+    public User user(){
+        return userService.getUser();
+    }
 }